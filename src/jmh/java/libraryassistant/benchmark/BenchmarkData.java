@@ -0,0 +1,85 @@
+package libraryassistant.benchmark;
+
+import libraryassistant.entities.Book;
+import libraryassistant.entities.BookEvent;
+import libraryassistant.entities.EventType;
+import libraryassistant.entities.Reader;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Синтетические книги, читатели и события с фиксированным seed, чтобы прогоны были сравнимы.
+ * Популярность книг и активность читателей неравномерная: небольшая часть набирает большую часть событий.
+ */
+final class BenchmarkData {
+    static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    // события за год, даты берутся из пула, чтобы 10 млн событий не держали 10 млн объектов даты
+    private static final int DATE_POOL = 100_000;
+    private static final long YEAR_SECONDS = 365L * 24 * 3600;
+
+    private BenchmarkData() {
+    }
+
+    static List<Book> books(int count) {
+        SplittableRandom random = new SplittableRandom(7);
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Book book = new Book();
+            book.setId(id(random));
+            book.setTitle("Книга " + i);
+            book.setAuthor("Автор " + (i % 1000));
+            books.add(book);
+        }
+        return books;
+    }
+
+    static List<Reader> readers(int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Reader> readers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Reader reader = new Reader();
+            reader.setId(id(random));
+            reader.setFirstName("Имя" + i);
+            reader.setSecondName("Фамилия" + i);
+            reader.setBirthDate(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(365 * 55)));
+            readers.add(reader);
+        }
+        return readers;
+    }
+
+    static List<BookEvent> events(int count, List<Book> books, List<Reader> readers) {
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDateTime[] dates = new LocalDateTime[DATE_POOL];
+        for (int i = 0; i < DATE_POOL; i++) {
+            dates[i] = START.plusSeconds(YEAR_SECONDS * i / DATE_POOL);
+        }
+        List<BookEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BookEvent event = new BookEvent();
+            event.setEventDate(dates[(int) ((long) i * DATE_POOL / count)]);
+            event.setEventType(i % 2 == 0 ? EventType.BORROW : EventType.RETURN);
+            event.setBook(books.get(skewed(random, books.size())));
+            event.setReader(readers.get(skewed(random, readers.size())));
+            events.add(event);
+        }
+        return events;
+    }
+
+    // id из того же генератора с фиксированным зерном: от запуска к запуску одинаковы и данные, и порядок в HashMap
+    private static UUID id(SplittableRandom random) {
+        long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    // индекс из [0, size) с перекосом к началу
+    private static int skewed(SplittableRandom random, int size) {
+        double u = random.nextDouble();
+        return (int) (size * u * u * u);
+    }
+}
@@ -0,0 +1,62 @@
+package libraryassistant.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import libraryassistant.dto.BookDTO;
+import libraryassistant.dto.BookEventDTO;
+import libraryassistant.entities.Book;
+import libraryassistant.entities.Reader;
+import libraryassistant.mapper.Mapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация списков книг и событий в JSON тем же способом, что и в ответах контроллеров.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonBenchmark {
+    @Param({"100", "10000"})
+    private int size;
+
+    // настройки по умолчанию Spring MVC: даты ISO-строками, модули java.time
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<BookDTO> books;
+    private List<BookEventDTO> events;
+
+    @Setup
+    public void setUp() {
+        Mapper mapper = new Mapper(null, null);
+        List<Book> bookEntities = BenchmarkData.books(size);
+        List<Reader> readers = BenchmarkData.readers(size);
+        books = bookEntities.stream().map(mapper::toBookDTO).toList();
+        events = BenchmarkData.events(size, bookEntities, readers).stream().map(mapper::toBookEventDTO).toList();
+    }
+
+    @Benchmark
+    public byte[] writeBooks() throws IOException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] writeEvents() throws IOException {
+        return objectMapper.writeValueAsBytes(events);
+    }
+}
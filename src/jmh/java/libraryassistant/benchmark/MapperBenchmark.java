@@ -0,0 +1,90 @@
+package libraryassistant.benchmark;
+
+import libraryassistant.dto.BookDTO;
+import libraryassistant.dto.BookEventDTO;
+import libraryassistant.dto.ReaderDTO;
+import libraryassistant.entities.Book;
+import libraryassistant.entities.BookEvent;
+import libraryassistant.entities.Reader;
+import libraryassistant.mapper.Mapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование сущностей в DTO и обратно для списков, как в ответах контроллеров.
+ * toBookEvent не измеряется: он обращается к репозиториям за ссылками на читателя и книгу.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+    @Param({"100", "10000"})
+    private int size;
+
+    // репозитории нужны только toBookEvent
+    private final Mapper mapper = new Mapper(null, null);
+    private List<Book> books;
+    private List<BookDTO> bookDTOs;
+    private List<Reader> readers;
+    private List<BookEvent> events;
+
+    @Setup
+    public void setUp() {
+        books = BenchmarkData.books(size);
+        readers = BenchmarkData.readers(size);
+        events = BenchmarkData.events(size, books, readers);
+        bookDTOs = books.stream().map(mapper::toBookDTO).toList();
+    }
+
+    @Benchmark
+    public List<BookDTO> toBookDTO() {
+        List<BookDTO> result = new ArrayList<>(books.size());
+        for (Book book : books) {
+            result.add(mapper.toBookDTO(book));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Book> toBook() {
+        List<Book> result = new ArrayList<>(bookDTOs.size());
+        for (BookDTO dto : bookDTOs) {
+            result.add(mapper.toBook(dto));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<ReaderDTO> toReaderDTO() {
+        List<ReaderDTO> result = new ArrayList<>(readers.size());
+        for (Reader reader : readers) {
+            result.add(mapper.toReaderDTO(reader));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<BookEventDTO> toBookEventDTO() {
+        List<BookEventDTO> result = new ArrayList<>(events.size());
+        for (BookEvent event : events) {
+            result.add(mapper.toBookEventDTO(event));
+        }
+        return result;
+    }
+}
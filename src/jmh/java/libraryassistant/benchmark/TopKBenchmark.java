@@ -0,0 +1,110 @@
+package libraryassistant.benchmark;
+
+import libraryassistant.engine.AnalyticsEngine;
+import libraryassistant.engine.BookEventsSavedEvent;
+import libraryassistant.entities.Book;
+import libraryassistant.entities.BookEvent;
+import libraryassistant.entities.EventType;
+import libraryassistant.entities.Reader;
+import libraryassistant.repository.projection.IdCount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск самых популярных книг за период в памяти JVM: группировка списка сущностей стримом
+ * (как раньше в BookEventService.findMostPopularBook), счет в HashMap с кучей top-K
+ * и колоночный AnalyticsEngine на тех же событиях.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class TopKBenchmark {
+    private static final int BOOKS = 10_000;
+    private static final int READERS = 10_000;
+    private static final int TOP = 10;
+    // вторая половина года
+    private static final LocalDateTime FROM = BenchmarkData.START.plusMonths(6);
+    private static final LocalDateTime TO = BenchmarkData.START.plusYears(1);
+
+    @Param({"10000", "1000000", "10000000"})
+    private int events;
+
+    private List<BookEvent> bookEvents;
+    private AnalyticsEngine engine;
+
+    @Setup
+    public void setUp() {
+        List<Book> books = BenchmarkData.books(BOOKS);
+        List<Reader> readers = BenchmarkData.readers(READERS);
+        bookEvents = BenchmarkData.events(events, books, readers);
+        // без базы: движок наполняется теми же событиями, что и список
+        engine = new AnalyticsEngine(null, null, Optional.empty());
+        List<BookEventsSavedEvent.Row> rows = new ArrayList<>(bookEvents.size());
+        for (BookEvent event : bookEvents) {
+            rows.add(new BookEventsSavedEvent.Row(event.getBook().getId(), event.getReader().getId(),
+                    event.getReader().getBirthDate(), event.getEventDate(), event.getEventType()));
+        }
+        engine.onEventsSaved(new BookEventsSavedEvent(rows));
+    }
+
+    @Benchmark
+    public List<UUID> streamGroupingBy() {
+        return bookEvents.stream()
+                .filter(event -> event.getEventType() == EventType.BORROW)
+                .filter(event -> !event.getEventDate().isBefore(FROM) && !event.getEventDate().isAfter(TO))
+                .collect(Collectors.groupingBy(event -> event.getBook().getId(), Collectors.counting()))
+                .entrySet().stream()
+                .sorted(Map.Entry.<UUID, Long>comparingByValue().reversed())
+                .limit(TOP)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Benchmark
+    public List<UUID> hashMapTopK() {
+        Map<UUID, long[]> counts = new HashMap<>();
+        for (BookEvent event : bookEvents) {
+            LocalDateTime date = event.getEventDate();
+            if (event.getEventType() == EventType.BORROW && !date.isBefore(FROM) && !date.isAfter(TO)) {
+                counts.computeIfAbsent(event.getBook().getId(), id -> new long[1])[0]++;
+            }
+        }
+        PriorityQueue<Map.Entry<UUID, long[]>> top = new PriorityQueue<>(TOP + 1,
+                (a, b) -> Long.compare(a.getValue()[0], b.getValue()[0]));
+        for (Map.Entry<UUID, long[]> entry : counts.entrySet()) {
+            top.add(entry);
+            if (top.size() > TOP) {
+                top.poll();
+            }
+        }
+        return top.stream().map(Map.Entry::getKey).toList();
+    }
+
+    @Benchmark
+    public List<UUID> analyticsEngine() {
+        return engine.countBooks(FROM, TO, null, null, TOP).stream().map(IdCount::getId).toList();
+    }
+}
@@ -2,8 +2,10 @@ package libraryassistant;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class LibraryApplication  {
     public static void main(String[] args) {
         SpringApplication.run(LibraryApplication.class, args);
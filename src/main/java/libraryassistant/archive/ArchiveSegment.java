@@ -0,0 +1,182 @@
+package libraryassistant.archive;
+
+import libraryassistant.entities.EventType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Сегмент архива событий, отображенный в память только для чтения.
+ * <pre>
+ * заголовок   magic, version, rows, books, readers (int), minMillis, maxMillis (long)
+ * словари     books x (msb, lsb), readers x (msb, lsb)
+ * колонки     timestamps long[rows] по возрастанию, book int[rows], reader int[rows], type byte[rows]
+ * </pre>
+ * Диапазон по времени находится двоичным поиском, подсчет идет по кодам словаря в массив long[].
+ */
+public final class ArchiveSegment {
+    static final int MAGIC = 0x4C455653;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 5 * 4 + 2 * 8;
+
+    private final String name;
+    private final int rows;
+    private final long minMillis;
+    private final long maxMillis;
+    private final UUID[] books;
+    private final UUID[] readers;
+    private final LongBuffer timestamps;
+    private final IntBuffer bookColumn;
+    private final IntBuffer readerColumn;
+    private final ByteBuffer typeColumn;
+
+    private ArchiveSegment(String name, MappedByteBuffer buffer) {
+        this.name = name;
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalStateException("Неизвестный формат сегмента архива " + name);
+        }
+        rows = buffer.getInt();
+        books = new UUID[buffer.getInt()];
+        readers = new UUID[buffer.getInt()];
+        minMillis = buffer.getLong();
+        maxMillis = buffer.getLong();
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new UUID(buffer.getLong(), buffer.getLong());
+        }
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new UUID(buffer.getLong(), buffer.getLong());
+        }
+        timestamps = buffer.slice(buffer.position(), 8 * rows).asLongBuffer();
+        int offset = buffer.position() + 8 * rows;
+        bookColumn = buffer.slice(offset, 4 * rows).asIntBuffer();
+        offset += 4 * rows;
+        readerColumn = buffer.slice(offset, 4 * rows).asIntBuffer();
+        offset += 4 * rows;
+        typeColumn = buffer.slice(offset, rows);
+    }
+
+    public static ArchiveSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ArchiveSegment(file.getFileName().toString(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public boolean overlaps(long fromMillis, long toMillis) {
+        return rows > 0 && minMillis < toMillis && maxMillis >= fromMillis;
+    }
+
+    public UUID bookId(int code) {
+        return books[code];
+    }
+
+    public int readerCount() {
+        return readers.length;
+    }
+
+    public UUID readerId(int code) {
+        return readers[code];
+    }
+
+    // выдачи по кодам книг в [fromMillis, toMillis)
+    public long[] countBorrowsByBook(long fromMillis, long toMillis) {
+        long[] counts = new long[books.length];
+        byte borrow = (byte) EventType.BORROW.ordinal();
+        for (int i = lowerBound(fromMillis), end = lowerBound(toMillis); i < end; i++) {
+            if (typeColumn.get(i) == borrow) {
+                counts[bookColumn.get(i)]++;
+            }
+        }
+        return counts;
+    }
+
+    // все события по кодам читателей в [fromMillis, toMillis)
+    public long[] countEventsByReader(long fromMillis, long toMillis) {
+        long[] counts = new long[readers.length];
+        for (int i = lowerBound(fromMillis), end = lowerBound(toMillis); i < end; i++) {
+            counts[readerColumn.get(i)]++;
+        }
+        return counts;
+    }
+
+    // выдачи по кодам книг в [fromMillis, toMillis) только у читателей, прошедших отбор
+    public long[] countBorrowsByBook(long fromMillis, long toMillis, Predicate<UUID> readerFilter) {
+        long[] counts = new long[books.length];
+        boolean[] accepted = accepted(readerFilter);
+        byte borrow = (byte) EventType.BORROW.ordinal();
+        for (int i = lowerBound(fromMillis), end = lowerBound(toMillis); i < end; i++) {
+            if (typeColumn.get(i) == borrow && accepted[readerColumn.get(i)]) {
+                counts[bookColumn.get(i)]++;
+            }
+        }
+        return counts;
+    }
+
+    // все события по кодам читателей в [fromMillis, toMillis) только у читателей, прошедших отбор
+    public long[] countEventsByReader(long fromMillis, long toMillis, Predicate<UUID> readerFilter) {
+        long[] counts = new long[readers.length];
+        boolean[] accepted = accepted(readerFilter);
+        for (int i = lowerBound(fromMillis), end = lowerBound(toMillis); i < end; i++) {
+            int reader = readerColumn.get(i);
+            if (accepted[reader]) {
+                counts[reader]++;
+            }
+        }
+        return counts;
+    }
+
+    public long timestamp(int row) {
+        return timestamps.get(row);
+    }
+
+    public int bookCode(int row) {
+        return bookColumn.get(row);
+    }
+
+    public int readerCode(int row) {
+        return readerColumn.get(row);
+    }
+
+    public EventType eventType(int row) {
+        return EventType.values()[typeColumn.get(row)];
+    }
+
+    // фильтр проверяется один раз на код словаря, а не на каждую строку
+    private boolean[] accepted(Predicate<UUID> readerFilter) {
+        boolean[] accepted = new boolean[readers.length];
+        for (int code = 0; code < readers.length; code++) {
+            accepted[code] = readerFilter.test(readers[code]);
+        }
+        return accepted;
+    }
+
+    // первая строка с временем >= millis
+    private int lowerBound(long millis) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps.get(mid) < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,11 @@
+package libraryassistant.archive;
+
+import java.time.LocalDateTime;
+
+/**
+ * Публикуется EventArchive, когда сегмент за период [fromDate, toDate) стал виден запросам.
+ * Пока сегмент не опубликован, события периода уже удалены из events, поэтому результаты,
+ * посчитанные в этом промежутке, нужно удалить из кэшей.
+ */
+public record ArchiveSegmentPublishedEvent(LocalDateTime fromDate, LocalDateTime toDate) {
+}
@@ -0,0 +1,329 @@
+package libraryassistant.archive;
+
+import jakarta.annotation.PostConstruct;
+import libraryassistant.dto.ArchiveSegmentDTO;
+import libraryassistant.entities.DailyBookStatsId;
+import libraryassistant.entities.DailyReaderStatsId;
+import libraryassistant.entities.EventType;
+import libraryassistant.service.EventPartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Архив старых событий в колоночных сегментах на локальном диске (library.archive.dir).
+ * События старше срока хранения помесячно переносятся из events в сегменты: удаление строк и запись
+ * сегмента в event_archive_segments идут в одной транзакции, файл сегмента переименовывается из .pending
+ * только после фиксации. Месяц, целиком лежащий до границы и имеющий свою секцию, переносится вместе с ней:
+ * секция отсоединяется, читается и удаляется, без построчного удаления. Незавершенные .pending при старте либо доводятся, либо удаляются по журналу.
+ * Дневные сводки при архивации не меняются, поэтому аналитика берет из архива только неполные края периода,
+ * а запросы с отбором читателей, которые сводки не покрывают, - весь период.
+ * Пересчет состояния выдачи дополняет журнал последним архивным событием по каждой книге.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "library.archive", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class EventArchive {
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String PENDING_SUFFIX = ".pending";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final List<ArchiveSegment> segments = new CopyOnWriteArrayList<>();
+
+    @Value("${library.archive.dir}")
+    private String archiveDir;
+
+    @Value("${library.archive.retention-days}")
+    private int retentionDays;
+
+    @PostConstruct
+    public void load() throws IOException {
+        Path dir = Files.createDirectories(Path.of(archiveDir));
+        Set<String> committed = Set.copyOf(jdbcTemplate.queryForList("select name from event_archive_segments", String.class));
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path pending : files.filter(file -> file.toString().endsWith(PENDING_SUFFIX)).toList()) {
+                String name = pending.getFileName().toString().replace(PENDING_SUFFIX, "");
+                if (committed.contains(name)) {
+                    Files.move(pending, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    Files.delete(pending);
+                }
+            }
+        }
+        for (String name : committed) {
+            Path file = dir.resolve(name);
+            if (Files.exists(file)) {
+                segments.add(ArchiveSegment.open(file));
+            } else {
+                log.warn("Сегмент архива {} есть в журнале, но отсутствует на диске", name);
+            }
+        }
+    }
+
+    @Scheduled(cron = "${library.archive.cron}")
+    public void archiveExpired() {
+        archiveBefore(LocalDate.now().minusDays(retentionDays));
+    }
+
+    // граница - начало дня, чтобы дневные сводки и архив делили период по целым дням
+    public List<ArchiveSegmentDTO> archiveBefore(LocalDate cutoff) {
+        LocalDateTime end = cutoff.atStartOfDay();
+        List<ArchiveSegmentDTO> archived = new ArrayList<>();
+        LocalDateTime oldest = jdbcTemplate.queryForObject(
+                "select min(event_date) from events where event_date < ?", LocalDateTime.class, end);
+        if (oldest == null) {
+            return archived;
+        }
+        for (LocalDateTime from = oldest.toLocalDate().withDayOfMonth(1).atStartOfDay(); from.isBefore(end); ) {
+            LocalDateTime to = from.plusMonths(1).isBefore(end) ? from.plusMonths(1) : end;
+            LocalDateTime segmentFrom = from;
+            ArchiveSegmentDTO segment = transactionTemplate.execute(status -> archiveRange(segmentFrom, to));
+            if (segment != null) {
+                log.info("В архив перенесено {} событий за период [{}, {})", segment.getRows(), segmentFrom, to);
+                archived.add(segment);
+            }
+            from = to;
+        }
+        return archived;
+    }
+
+    public void forEachSegment(Consumer<ArchiveSegment> action) {
+        segments.forEach(action);
+    }
+
+    public List<ArchiveSegmentDTO> findAllSegments() {
+        return jdbcTemplate.query("select name, from_date, to_date, row_count, size_bytes from event_archive_segments order by from_date",
+                (rs, rowNum) -> new ArchiveSegmentDTO(rs.getString(1), rs.getObject(2, LocalDateTime.class),
+                        rs.getObject(3, LocalDateTime.class), rs.getLong(4), rs.getLong(5)));
+    }
+
+    public boolean overlaps(LocalDateTime startDate, LocalDateTime endDate) {
+        long from = SegmentColumns.toMillis(startDate);
+        long to = SegmentColumns.toMillis(endDate) + 1;
+        return segments.stream().anyMatch(segment -> segment.overlaps(from, to));
+    }
+
+    // выдачи по книгам за [startDate, endDate], как countByBook по events
+    public Map<UUID, Long> countBorrowsByBook(LocalDateTime startDate, LocalDateTime endDate) {
+        return count(startDate, endDate, ArchiveSegment::countBorrowsByBook, ArchiveSegment::bookId);
+    }
+
+    // выдачи по книгам за [startDate, endDate] у отобранных читателей, как countByBookForReadersBornBetween
+    public Map<UUID, Long> countBorrowsByBook(LocalDateTime startDate, LocalDateTime endDate, Predicate<UUID> readerFilter) {
+        return count(startDate, endDate, (segment, from, to) -> segment.countBorrowsByBook(from, to, readerFilter), ArchiveSegment::bookId);
+    }
+
+    // все события по читателям за [startDate, endDate], как countByReader по events
+    public Map<UUID, Long> countEventsByReader(LocalDateTime startDate, LocalDateTime endDate) {
+        return count(startDate, endDate, ArchiveSegment::countEventsByReader, ArchiveSegment::readerId);
+    }
+
+    // все события отобранных читателей за [startDate, endDate], как countByReaderBornBetween
+    public Map<UUID, Long> countEventsByReader(LocalDateTime startDate, LocalDateTime endDate, Predicate<UUID> readerFilter) {
+        return count(startDate, endDate, (segment, from, to) -> segment.countEventsByReader(from, to, readerFilter), ArchiveSegment::readerId);
+    }
+
+    // читатели из словарей сегментов, пересекающих [startDate, endDate]
+    public Set<UUID> readerIds(LocalDateTime startDate, LocalDateTime endDate) {
+        Set<UUID> ids = new HashSet<>();
+        long from = SegmentColumns.toMillis(startDate);
+        long to = SegmentColumns.toMillis(endDate) + 1;
+        for (ArchiveSegment segment : segments) {
+            if (segment.overlaps(from, to)) {
+                for (int code = 0; code < segment.readerCount(); code++) {
+                    ids.add(segment.readerId(code));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // последнее архивное событие по каждой книге; строки сегмента упорядочены по времени, поэтому сегмент
+    // просматривается с конца и для каждой книги берется первая встреченная строка
+    public Collection<LatestEvent> latestEventPerBook() {
+        Map<UUID, LatestEvent> latest = new HashMap<>();
+        for (ArchiveSegment segment : segments) {
+            BitSet seen = new BitSet();
+            for (int row = segment.rows() - 1; row >= 0; row--) {
+                int bookCode = segment.bookCode(row);
+                if (seen.get(bookCode)) {
+                    continue;
+                }
+                seen.set(bookCode);
+                UUID bookId = segment.bookId(bookCode);
+                LocalDateTime eventDate = dateTime(segment.timestamp(row));
+                LatestEvent current = latest.get(bookId);
+                if (current == null || current.eventDate().isBefore(eventDate)) {
+                    latest.put(bookId, new LatestEvent(bookId, segment.readerId(segment.readerCode(row)), segment.eventType(row), eventDate));
+                }
+            }
+        }
+        return latest.values();
+    }
+
+    // дневные итоги архива для пересчета сводок, которые иначе строятся только по events
+    public Map<DailyBookStatsId, Long> dailyBorrowsByBook() {
+        Map<DailyBookStatsId, Long> totals = new HashMap<>();
+        for (ArchiveSegment segment : segments) {
+            for (int row = 0; row < segment.rows(); row++) {
+                if (segment.eventType(row) == EventType.BORROW) {
+                    totals.merge(new DailyBookStatsId(day(segment.timestamp(row)), segment.bookId(segment.bookCode(row))), 1L, Long::sum);
+                }
+            }
+        }
+        return totals;
+    }
+
+    public Map<DailyReaderStatsId, Long> dailyEventsByReader() {
+        Map<DailyReaderStatsId, Long> totals = new HashMap<>();
+        for (ArchiveSegment segment : segments) {
+            for (int row = 0; row < segment.rows(); row++) {
+                totals.merge(new DailyReaderStatsId(day(segment.timestamp(row)), segment.readerId(segment.readerCode(row))), 1L, Long::sum);
+            }
+        }
+        return totals;
+    }
+
+    private Map<UUID, Long> count(LocalDateTime startDate, LocalDateTime endDate, SegmentCounter counter, BiFunction<ArchiveSegment, Integer, UUID> ids) {
+        Map<UUID, Long> totals = new HashMap<>();
+        long from = SegmentColumns.toMillis(startDate);
+        long to = SegmentColumns.toMillis(endDate) + 1;
+        for (ArchiveSegment segment : segments) {
+            if (segment.overlaps(from, to)) {
+                long[] counts = counter.count(segment, from, to);
+                for (int code = 0; code < counts.length; code++) {
+                    if (counts[code] > 0) {
+                        totals.merge(ids.apply(segment, code), counts[code], Long::sum);
+                    }
+                }
+            }
+        }
+        return totals;
+    }
+
+    private ArchiveSegmentDTO archiveRange(LocalDateTime from, LocalDateTime to) {
+        SegmentColumns columns = new SegmentColumns();
+        RowCallbackHandler collect = rs -> columns.add(rs.getObject(1, LocalDateTime.class), EventType.valueOf(rs.getString(2)),
+                rs.getObject(3, UUID.class), rs.getObject(4, UUID.class));
+        String partition = monthPartition(from, to);
+        if (partition != null) {
+            // секция отсоединяется до чтения, чтобы вставки за этот месяц не попали в нее после чтения;
+            // при откате транзакции секция остается на месте
+            jdbcTemplate.execute("alter table events detach partition " + partition);
+            jdbcTemplate.query("select event_date, event_type, book_id, reader_id from " + partition + " order by event_date, id", collect);
+            jdbcTemplate.execute("drop table " + partition);
+        } else {
+            jdbcTemplate.query("""
+                            with archived as (
+                                delete from events where event_date >= ? and event_date < ?
+                                returning id, event_date, event_type, book_id, reader_id
+                            )
+                            select event_date, event_type, book_id, reader_id from archived order by event_date, id
+                            """,
+                    collect, from, to);
+        }
+        if (columns.size() == 0) {
+            return null;
+        }
+        Path dir = Path.of(archiveDir);
+        String name = "events-" + from.toLocalDate() + "-" + UUID.randomUUID() + SEGMENT_SUFFIX;
+        Path pending = dir.resolve(name + PENDING_SUFFIX);
+        long bytes;
+        try {
+            columns.write(pending);
+            bytes = Files.size(pending);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        jdbcTemplate.update("insert into event_archive_segments (name, from_date, to_date, row_count, size_bytes) values (?, ?, ?, ?, ?)",
+                name, from, to, columns.size(), bytes);
+        publishOnCommit(pending, dir.resolve(name), from, to);
+        return new ArchiveSegmentDTO(name, from, to, columns.size(), bytes);
+    }
+
+    // секция месяца, если период - ровно этот месяц и у него есть своя секция events; иначе null
+    private String monthPartition(LocalDateTime from, LocalDateTime to) {
+        if (!to.equals(from.plusMonths(1))) {
+            return null;
+        }
+        String name = EventPartitionService.partitionName(YearMonth.from(from));
+        Integer attached = jdbcTemplate.queryForObject("""
+                select count(*) from pg_inherits i join pg_class c on c.oid = i.inhrelid
+                where i.inhparent = 'events'::regclass and c.relname = ?
+                """, Integer.class, name);
+        return attached == null || attached == 0 ? null : name;
+    }
+
+    private void publishOnCommit(Path pending, Path file, LocalDateTime from, LocalDateTime to) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        Files.move(pending, file, StandardCopyOption.ATOMIC_MOVE);
+                        segments.add(ArchiveSegment.open(file));
+                        eventPublisher.publishEvent(new ArchiveSegmentPublishedEvent(from, to));
+                    } else {
+                        Files.deleteIfExists(pending);
+                    }
+                } catch (IOException e) {
+                    // журнал уже зафиксирован, сегмент будет доведен при следующем старте
+                    log.error("Не удалось опубликовать сегмент архива {}", file, e);
+                }
+            }
+        });
+    }
+
+    private static LocalDate day(long millis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime dateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    @FunctionalInterface
+    private interface SegmentCounter {
+        long[] count(ArchiveSegment segment, long fromMillis, long toMillis);
+    }
+
+    public record LatestEvent(UUID bookId, UUID readerId, EventType eventType, LocalDateTime eventDate) {
+    }
+}
@@ -0,0 +1,93 @@
+package libraryassistant.archive;
+
+import libraryassistant.entities.EventType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Накопитель колонок сегмента архива. Строки добавляются в порядке event_date,
+ * идентификаторы книг и читателей кодируются номерами в словаре сегмента.
+ * Формат файла описан в {@link ArchiveSegment}.
+ */
+public final class SegmentColumns {
+    private final Map<UUID, Integer> bookCodes = new HashMap<>();
+    private final Map<UUID, Integer> readerCodes = new HashMap<>();
+    private final List<UUID> books = new ArrayList<>();
+    private final List<UUID> readers = new ArrayList<>();
+    private long[] timestamps = new long[1024];
+    private int[] bookColumn = new int[1024];
+    private int[] readerColumn = new int[1024];
+    private byte[] typeColumn = new byte[1024];
+    private int size;
+
+    public void add(LocalDateTime eventDate, EventType eventType, UUID bookId, UUID readerId) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            bookColumn = Arrays.copyOf(bookColumn, capacity);
+            readerColumn = Arrays.copyOf(readerColumn, capacity);
+            typeColumn = Arrays.copyOf(typeColumn, capacity);
+        }
+        timestamps[size] = toMillis(eventDate);
+        bookColumn[size] = code(bookId, bookCodes, books);
+        readerColumn[size] = code(readerId, readerCodes, readers);
+        typeColumn[size] = (byte) eventType.ordinal();
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void write(Path file) throws IOException {
+        long bytes = ArchiveSegment.HEADER_BYTES + 16L * (books.size() + readers.size()) + 17L * size;
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(bytes));
+        buffer.putInt(ArchiveSegment.MAGIC).putInt(ArchiveSegment.VERSION)
+                .putInt(size).putInt(books.size()).putInt(readers.size())
+                .putLong(size == 0 ? 0 : timestamps[0]).putLong(size == 0 ? 0 : timestamps[size - 1]);
+        for (UUID id : books) {
+            buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        }
+        for (UUID id : readers) {
+            buffer.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+        }
+        buffer.asLongBuffer().put(timestamps, 0, size);
+        buffer.position(buffer.position() + 8 * size);
+        buffer.asIntBuffer().put(bookColumn, 0, size);
+        buffer.position(buffer.position() + 4 * size);
+        buffer.asIntBuffer().put(readerColumn, 0, size);
+        buffer.position(buffer.position() + 4 * size);
+        buffer.put(typeColumn, 0, size);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    // LocalDateTime хранится как миллисекунды от эпохи без часового пояса
+    static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static int code(UUID id, Map<UUID, Integer> codes, List<UUID> dictionary) {
+        return codes.computeIfAbsent(id, key -> {
+            dictionary.add(key);
+            return dictionary.size() - 1;
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package libraryassistant.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import libraryassistant.dto.BookDTO;
+import libraryassistant.dto.CacheStatsDTO;
+import libraryassistant.dto.ReaderDTO;
+import libraryassistant.mapper.Mapper;
+import libraryassistant.repository.BookRepository;
+import libraryassistant.repository.ReaderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Кэш поиска книги по названию и читателя по полному имени, а также обоих по id.
+ * Отсутствующие записи не кэшируются, поэтому новые книги и читатели видны сразу;
+ * при изменении или удалении записи сервисы удаляют из кэша и старый, и новый ключ.
+ */
+@Component
+public class LookupCache {
+    private final BookRepository bookRepository;
+    private final ReaderRepository readerRepository;
+    private final Mapper mapper;
+    private final Cache<String, BookDTO> booksByTitle;
+    private final Cache<ReaderName, ReaderDTO> readersByName;
+    private final Cache<UUID, BookDTO> booksById;
+    private final Cache<UUID, ReaderDTO> readersById;
+
+    public LookupCache(BookRepository bookRepository,
+                       ReaderRepository readerRepository,
+                       Mapper mapper,
+                       @Value("${library.lookup-cache.max-size}") long maxSize,
+                       @Value("${library.lookup-cache.expire-after-write}") Duration expireAfterWrite) {
+        this.bookRepository = bookRepository;
+        this.readerRepository = readerRepository;
+        this.mapper = mapper;
+        this.booksByTitle = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(expireAfterWrite).recordStats().build();
+        this.readersByName = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(expireAfterWrite).recordStats().build();
+        this.booksById = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(expireAfterWrite).recordStats().build();
+        this.readersById = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(expireAfterWrite).recordStats().build();
+    }
+
+    public Optional<BookDTO> findBookByTitle(String title) {
+        if (title == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(booksByTitle.get(title,
+                key -> bookRepository.findByTitle(key).map(mapper::toBookDTO).orElse(null)));
+    }
+
+    public Optional<ReaderDTO> findReaderByName(String firstName, String secondName) {
+        if (firstName == null || secondName == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(readersByName.get(new ReaderName(firstName, secondName),
+                key -> readerRepository.findByFirstNameAndSecondName(key.firstName(), key.secondName()).map(mapper::toReaderDTO).orElse(null)));
+    }
+
+    public Optional<BookDTO> findBookById(UUID id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(booksById.get(id, key -> bookRepository.findDtoById(key).orElse(null)));
+    }
+
+    public Optional<ReaderDTO> findReaderById(UUID id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(readersById.get(id, key -> readerRepository.findDtoById(key).orElse(null)));
+    }
+
+    public void evictBook(UUID id, String title) {
+        if (id != null) {
+            booksById.invalidate(id);
+        }
+        if (title != null) {
+            booksByTitle.invalidate(title);
+        }
+    }
+
+    public void evictReader(UUID id, String firstName, String secondName) {
+        if (id != null) {
+            readersById.invalidate(id);
+        }
+        if (firstName != null && secondName != null) {
+            readersByName.invalidate(new ReaderName(firstName, secondName));
+        }
+    }
+
+    public List<CacheStatsDTO> stats() {
+        return List.of(toStats("booksByTitle", booksByTitle), toStats("readersByName", readersByName),
+                toStats("booksById", booksById), toStats("readersById", readersById));
+    }
+
+    private CacheStatsDTO toStats(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDTO(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.evictionCount(), stats.hitRate());
+    }
+
+    private record ReaderName(String firstName, String secondName) {
+    }
+}
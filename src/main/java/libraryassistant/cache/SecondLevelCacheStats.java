@@ -0,0 +1,31 @@
+package libraryassistant.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import libraryassistant.dto.CacheStatsDTO;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheStats {
+    private final EntityManagerFactory entityManagerFactory;
+
+    public List<CacheStatsDTO> stats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .map(region -> toStats(region, statistics.getCacheRegionStatistics(region)))
+                .toList();
+    }
+
+    private CacheStatsDTO toStats(String region, CacheRegionStatistics stats) {
+        long requests = stats.getHitCount() + stats.getMissCount();
+        double hitRate = requests == 0 ? 1.0 : (double) stats.getHitCount() / requests;
+        return new CacheStatsDTO(region, stats.getElementCountInMemory(), stats.getHitCount(), stats.getMissCount(), -1, hitRate);
+    }
+}
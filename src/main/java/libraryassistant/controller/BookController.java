@@ -1,6 +1,9 @@
 package libraryassistant.controller;
 
 import libraryassistant.dto.BookDTO;
+import libraryassistant.dto.BulkItemResultDTO;
+import libraryassistant.dto.CursorPage;
+import libraryassistant.pagination.Cursors;
 import libraryassistant.service.BookService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -30,6 +33,19 @@ public class BookController {
         return new ResponseEntity<>(bookService.createBook(bookDTO), HttpStatus.CREATED);
     }
 
+    /**
+     * Массовое создание книг.
+     *
+     * @param bookDTOs Список DTO книг для создания.
+     * @return Ответ с результатом по каждой книге (CREATED или DUPLICATE) в порядке запроса и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST http://localhost:8080/books/bulk -H "Content-Type: application/json" -d "[{\"title\":\"book1\", \"author\":\"author1\"}, {\"title\":\"book2\", \"author\":\"author2\"}]"
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<List<BulkItemResultDTO<BookDTO>>> createBooks(@RequestBody List<BookDTO> bookDTOs) {
+        return new ResponseEntity<>(bookService.createBooks(bookDTOs), HttpStatus.OK);
+    }
+
     /**
      * Обновление книги.
      *
@@ -58,15 +74,20 @@ public class BookController {
     }
 
     /**
-     * Поиск всех книг.
+     * Постраничный поиск всех книг.
      *
-     * @return Ответ с списком всех книг и статусом 200 (OK).
+     * @param after Курсор из заголовка X-Next-Cursor предыдущей страницы, для первой страницы не передается.
+     * @param limit Размер страницы (не больше 1000).
+     * @return Ответ со страницей книг, курсором следующей страницы в заголовке X-Next-Cursor и статусом 200 (OK).
      * Пример запроса:
-     * curl -X GET http://localhost:8080/books
+     * curl -i -X GET "http://localhost:8080/books?limit=100"
+     * curl -i -X GET "http://localhost:8080/books?limit=100&after={input cursor}"
      */
     @GetMapping
-    public ResponseEntity<List<BookDTO>> getAllBooks() {
-        return new ResponseEntity<>(bookService.findAllBooks(), HttpStatus.OK);
+    public ResponseEntity<List<BookDTO>> getAllBooks(@RequestParam(required = false) String after,
+                                                     @RequestParam(defaultValue = "" + Cursors.DEFAULT_LIMIT) int limit) {
+        CursorPage<BookDTO> page = bookService.findAllBooks(after, limit);
+        return new ResponseEntity<>(page.getItems(), Cursors.headers(page), HttpStatus.OK);
     }
 
 
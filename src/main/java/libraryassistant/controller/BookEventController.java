@@ -2,13 +2,24 @@ package libraryassistant.controller;
 
 import libraryassistant.dto.BookDTO;
 import libraryassistant.dto.BookEventDTO;
+import libraryassistant.dto.BulkItemResultDTO;
+import libraryassistant.dto.CursorPage;
+import libraryassistant.dto.HistogramBucketDTO;
+import libraryassistant.dto.HistogramGranularity;
+import libraryassistant.dto.LeaderboardEntryDTO;
+import libraryassistant.dto.LeaderboardWindow;
 import libraryassistant.dto.ReaderDTO;
 import libraryassistant.entities.EventType;
+import libraryassistant.pagination.Cursors;
 import libraryassistant.service.BookEventService;
+import libraryassistant.service.EventHistogramService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -17,6 +28,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class BookEventController {
     private final BookEventService bookEventService;
+    private final EventHistogramService eventHistogramService;
 
     /**
      * Создание события.
@@ -29,6 +41,20 @@ public class BookEventController {
         return new ResponseEntity<>(bookEventService.createEvent(event), HttpStatus.CREATED);
     }
 
+    /**
+     * Массовое создание событий, например накопленных киоском самообслуживания без связи.
+     * События проверяются в порядке их дат: выдача возможна только невыданной книги, возврат - только выданной.
+     *
+     * @param events Список DTO событий (у читателя и книги достаточно id).
+     * @return Ответ с результатом по каждому событию (CREATED или REJECTED с причиной) в порядке запроса и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST http://localhost:8080/events/bulk -H "Content-Type: application/json" -d "[{\"eventDate\":\"2024-12-01T10:00:00\", \"eventType\":\"BORROW\", \"reader\":{\"id\":\"<reader id>\"}, \"book\":{\"id\":\"<book id>\"}}]"
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<List<BulkItemResultDTO<BookEventDTO>>> createEvents(@RequestBody List<BookEventDTO> events) {
+        return new ResponseEntity<>(bookEventService.createEvents(events), HttpStatus.OK);
+    }
+
     /**
      * Создание события по именам.
      *
@@ -54,13 +80,18 @@ public class BookEventController {
      *
      * @param startDate Дата начала периода.
      * @param endDate Дата конца периода.
+     * @param readerBornAfter Учитывать только читателей, родившихся после этой даты (необязательно).
+     * @param readerBornBefore Учитывать только читателей, родившихся до этой даты (необязательно).
      * @return Ответ с самой популярной книгой за указанный период и статусом 200 (OK).
      * Пример запроса:
      * curl -X GET "http://localhost:8080/events/most-popular-book?startDate=2023-01-01T00:00:00&endDate=2024-12-31T23:59:59"
+     * curl -X GET "http://localhost:8080/events/most-popular-book?startDate=2024-03-01T00:00:00&endDate=2024-03-31T23:59:59&readerBornAfter=2000-12-31"
      */
     @GetMapping("/most-popular-book")
-    public ResponseEntity<BookDTO> getMostPopularBook(@RequestParam LocalDateTime startDate, @RequestParam LocalDateTime endDate) {
-        return new ResponseEntity<>(bookEventService.findMostPopularBook(startDate, endDate), HttpStatus.OK);
+    public ResponseEntity<BookDTO> getMostPopularBook(@RequestParam LocalDateTime startDate, @RequestParam LocalDateTime endDate,
+                                                      @RequestParam(required = false) LocalDate readerBornAfter,
+                                                      @RequestParam(required = false) LocalDate readerBornBefore) {
+        return new ResponseEntity<>(bookEventService.findMostPopularBook(startDate, endDate, readerBornAfter, readerBornBefore), HttpStatus.OK);
     }
 
     /**
@@ -68,25 +99,123 @@ public class BookEventController {
      *
      * @param startDate Дата начала периода.
      * @param endDate Дата конца периода.
+     * @param readerBornAfter Учитывать только читателей, родившихся после этой даты (необязательно).
+     * @param readerBornBefore Учитывать только читателей, родившихся до этой даты (необязательно).
      * @return Ответ с самым активным читателем за указанный период и статусом 200 (OK).
      * Пример запроса:
      *  curl -X GET "http://localhost:8080/events/most-active-reader?startDate=2023-01-01T00:00:00&endDate=2024-12-31T23:59:59"
      */
     @GetMapping("/most-active-reader")
-    public ResponseEntity<ReaderDTO> getMostActiveReader(@RequestParam LocalDateTime startDate, @RequestParam LocalDateTime endDate) {
-        return new ResponseEntity<>(bookEventService.findMostActiveReader(startDate, endDate), HttpStatus.OK);
+    public ResponseEntity<ReaderDTO> getMostActiveReader(@RequestParam LocalDateTime startDate, @RequestParam LocalDateTime endDate,
+                                                         @RequestParam(required = false) LocalDate readerBornAfter,
+                                                         @RequestParam(required = false) LocalDate readerBornBefore) {
+        return new ResponseEntity<>(bookEventService.findMostActiveReader(startDate, endDate, readerBornAfter, readerBornBefore), HttpStatus.OK);
+    }
+
+    /**
+     * Рейтинг самых популярных книг (по числу выдач) за скользящее окно.
+     *
+     * @param window Окно: LAST_24H (последние сутки) или LAST_7D (последние 7 дней).
+     * @param limit Размер рейтинга.
+     * @return Ответ со списком книг с местом и числом выдач и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X GET "http://localhost:8080/events/leaderboard/books?window=LAST_24H&limit=10"
+     */
+    @GetMapping("/leaderboard/books")
+    public ResponseEntity<List<LeaderboardEntryDTO<BookDTO>>> getBookLeaderboard(@RequestParam(defaultValue = "LAST_24H") LeaderboardWindow window,
+                                                                                 @RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(bookEventService.findBookLeaderboard(window, limit), HttpStatus.OK);
+    }
+
+    /**
+     * Рейтинг самых активных читателей (по числу событий) за скользящее окно.
+     *
+     * @param window Окно: LAST_24H (последние сутки) или LAST_7D (последние 7 дней).
+     * @param limit Размер рейтинга.
+     * @return Ответ со списком читателей с местом и числом событий и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X GET "http://localhost:8080/events/leaderboard/readers?window=LAST_7D&limit=10"
+     */
+    @GetMapping("/leaderboard/readers")
+    public ResponseEntity<List<LeaderboardEntryDTO<ReaderDTO>>> getReaderLeaderboard(@RequestParam(defaultValue = "LAST_24H") LeaderboardWindow window,
+                                                                                     @RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(bookEventService.findReaderLeaderboard(window, limit), HttpStatus.OK);
+    }
+
+    /**
+     * Число выдач и возвратов по корзинам (час, день или неделя с понедельника) за период.
+     * Возвращаются все корзины, пересекающиеся с периодом, включая пустые.
+     *
+     * @param startDate Дата начала периода.
+     * @param endDate Дата конца периода.
+     * @param granularity Размер корзины: hour, day или week, без учета регистра.
+     * @return Ответ со списком корзин в порядке времени и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X GET "http://localhost:8080/events/histogram?startDate=2024-01-01T00:00:00&endDate=2024-12-31T23:59:59&granularity=week"
+     */
+    @GetMapping("/histogram")
+    public ResponseEntity<List<HistogramBucketDTO>> getHistogram(@RequestParam LocalDateTime startDate, @RequestParam LocalDateTime endDate,
+                                                                 @RequestParam(defaultValue = "DAY") HistogramGranularity granularity) {
+        return new ResponseEntity<>(eventHistogramService.findHistogram(startDate, endDate, granularity), HttpStatus.OK);
+    }
+
+    /**
+     * Потоковая выгрузка журнала событий в формате NDJSON (одно событие в строке).
+     *
+     * @param startDate Дата начала периода (необязательно).
+     * @param endDate Дата конца периода (необязательно).
+     * @param eventType Тип события, BORROW или RETURN (необязательно).
+     * @return Ответ с потоком событий в порядке их даты и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X GET "http://localhost:8080/events/export?startDate=2023-01-01T00:00:00&endDate=2024-12-31T23:59:59&eventType=BORROW"
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportEvents(@RequestParam(required = false) LocalDateTime startDate,
+                                                              @RequestParam(required = false) LocalDateTime endDate,
+                                                              @RequestParam(required = false) EventType eventType) {
+        StreamingResponseBody body = out -> bookEventService.exportEvents(startDate, endDate, eventType, out);
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    /**
+     * Пересчет текущего состояния выдачи книг по журналу событий.
+     *
+     * @return Ответ с количеством книг, для которых восстановлено состояние, и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST http://localhost:8080/events/loan-state/rebuild
+     */
+    @PostMapping("/loan-state/rebuild")
+    public ResponseEntity<Integer> rebuildLoanState() {
+        return new ResponseEntity<>(bookEventService.rebuildLoanState(), HttpStatus.OK);
+    }
+
+    /**
+     * Пересчет дневных сводок по выдачам книг и активности читателей по журналу событий.
+     *
+     * @return Ответ с количеством записанных строк сводок и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST http://localhost:8080/events/stats/backfill
+     */
+    @PostMapping("/stats/backfill")
+    public ResponseEntity<Integer> backfillDailyStats() {
+        return new ResponseEntity<>(bookEventService.backfillDailyStats(), HttpStatus.OK);
     }
 
     /**
-     * Поиск всех событий.
+     * Постраничный поиск всех событий в порядке их даты.
      *
-     * @return Ответ с списком всех событий и статусом 200 (OK).
+     * @param after Курсор из заголовка X-Next-Cursor предыдущей страницы, для первой страницы не передается.
+     * @param limit Размер страницы (не больше 1000).
+     * @return Ответ со страницей событий, курсором следующей страницы в заголовке X-Next-Cursor и статусом 200 (OK).
      * Пример запроса:
-     * curl -X GET http://localhost:8080/events
+     * curl -i -X GET "http://localhost:8080/events?limit=100"
+     * curl -i -X GET "http://localhost:8080/events?limit=100&after={input cursor}"
      */
     @GetMapping
-    public ResponseEntity<List<BookEventDTO>> getAllEvents() {
-        return new ResponseEntity<>(bookEventService.findAllEvents(), HttpStatus.OK);
+    public ResponseEntity<List<BookEventDTO>> getAllEvents(@RequestParam(required = false) String after,
+                                                           @RequestParam(defaultValue = "" + Cursors.DEFAULT_LIMIT) int limit) {
+        CursorPage<BookEventDTO> page = bookEventService.findAllEvents(after, limit);
+        return new ResponseEntity<>(page.getItems(), Cursors.headers(page), HttpStatus.OK);
     }
 }
 
@@ -0,0 +1,34 @@
+package libraryassistant.controller;
+
+import libraryassistant.cache.LookupCache;
+import libraryassistant.cache.SecondLevelCacheStats;
+import libraryassistant.dto.CacheStatsDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+@RestController
+@RequestMapping("/cache")
+@RequiredArgsConstructor
+public class CacheController {
+    private final LookupCache lookupCache;
+    private final SecondLevelCacheStats secondLevelCacheStats;
+
+    /**
+     * Статистика кэшей поиска книг по названию и читателей по имени, а также регионов кэша второго уровня Hibernate.
+     *
+     * @return Ответ со списком счетчиков попаданий, промахов и вытеснений по каждому кэшу и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X GET http://localhost:8080/cache/stats
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<CacheStatsDTO>> getCacheStats() {
+        return new ResponseEntity<>(Stream.concat(lookupCache.stats().stream(), secondLevelCacheStats.stats().stream()).toList(), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,46 @@
+package libraryassistant.controller;
+
+import libraryassistant.archive.EventArchive;
+import libraryassistant.dto.ArchiveSegmentDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/events/archive")
+@ConditionalOnProperty(prefix = "library.archive", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class EventArchiveController {
+    private final EventArchive eventArchive;
+
+    /**
+     * Список сегментов архива событий.
+     *
+     * @return Ответ со списком сегментов (период, число событий, размер файла) и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X GET http://localhost:8080/events/archive
+     */
+    @GetMapping
+    public ResponseEntity<List<ArchiveSegmentDTO>> getAllSegments() {
+        return new ResponseEntity<>(eventArchive.findAllSegments(), HttpStatus.OK);
+    }
+
+    /**
+     * Перенос событий до указанной даты из базы в сегменты архива (по одному сегменту на месяц).
+     * Самая популярная книга и самый активный читатель за любой период считаются так же, как до переноса.
+     *
+     * @param before Дата (yyyy-MM-dd), события до начала которой переносятся в архив.
+     * @return Ответ со списком созданных сегментов и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST "http://localhost:8080/events/archive?before=2023-01-01"
+     */
+    @PostMapping
+    public ResponseEntity<List<ArchiveSegmentDTO>> archiveEvents(@RequestParam LocalDate before) {
+        return new ResponseEntity<>(eventArchive.archiveBefore(before), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,44 @@
+package libraryassistant.controller;
+
+import libraryassistant.dto.EventPartitionDTO;
+import libraryassistant.service.EventPartitionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.util.List;
+
+@RestController
+@RequestMapping("/events/partitions")
+@RequiredArgsConstructor
+public class EventPartitionController {
+    private final EventPartitionService eventPartitionService;
+
+    /**
+     * Список помесячных секций журнала событий.
+     *
+     * @return Ответ со списком секций и их границ и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X GET http://localhost:8080/events/partitions
+     */
+    @GetMapping
+    public ResponseEntity<List<EventPartitionDTO>> getAllPartitions() {
+        return new ResponseEntity<>(eventPartitionService.findAllPartitions(), HttpStatus.OK);
+    }
+
+    /**
+     * Создание секций за указанные месяцы. Строки этих месяцев из секции по умолчанию переносятся в новые секции.
+     *
+     * @param from Первый месяц (yyyy-MM).
+     * @param to Последний месяц включительно (yyyy-MM).
+     * @return Ответ со списком созданных секций и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST "http://localhost:8080/events/partitions?from=2023-01&to=2023-12"
+     */
+    @PostMapping
+    public ResponseEntity<List<EventPartitionDTO>> createPartitions(@RequestParam YearMonth from, @RequestParam YearMonth to) {
+        return new ResponseEntity<>(eventPartitionService.createPartitions(from, to), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,15 @@
+package libraryassistant.controller;
+
+import libraryassistant.dto.HistogramGranularity;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+// Spring Boot регистрирует бины Converter в MVC, стандартный разбор enum учитывает регистр
+@Component
+public class HistogramGranularityConverter implements Converter<String, HistogramGranularity> {
+
+    @Override
+    public HistogramGranularity convert(String source) {
+        return HistogramGranularity.of(source);
+    }
+}
@@ -0,0 +1,60 @@
+package libraryassistant.controller;
+
+import libraryassistant.dto.ImportReportDTO;
+import libraryassistant.importer.CatalogTable;
+import libraryassistant.service.CatalogImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/import")
+@RequiredArgsConstructor
+public class ImportController {
+    private final CatalogImportService catalogImportService;
+
+    /**
+     * Импорт книг из CSV-файла в каталоге импорта (library.import.dir).
+     * Колонки файла: title,author. Прерванный импорт при повторном запуске продолжается с последней пачки.
+     *
+     * @param file Имя файла относительно каталога импорта.
+     * @param header Есть ли в файле строка заголовка.
+     * @return Ответ с отчетом об импорте и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST "http://localhost:8080/import/books?file=books.csv&header=true"
+     */
+    @PostMapping("/books")
+    public ResponseEntity<ImportReportDTO> importBooks(@RequestParam String file, @RequestParam(defaultValue = "true") boolean header) {
+        return new ResponseEntity<>(catalogImportService.importFile(CatalogTable.BOOKS, file, header), HttpStatus.OK);
+    }
+
+    /**
+     * Импорт читателей из CSV-файла в каталоге импорта (library.import.dir).
+     * Колонки файла: first_name,second_name,birth_date (yyyy-MM-dd).
+     *
+     * @param file Имя файла относительно каталога импорта.
+     * @param header Есть ли в файле строка заголовка.
+     * @return Ответ с отчетом об импорте и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST "http://localhost:8080/import/readers?file=readers.csv&header=true"
+     */
+    @PostMapping("/readers")
+    public ResponseEntity<ImportReportDTO> importReaders(@RequestParam String file, @RequestParam(defaultValue = "true") boolean header) {
+        return new ResponseEntity<>(catalogImportService.importFile(CatalogTable.READERS, file, header), HttpStatus.OK);
+    }
+
+    /**
+     * Ход выполнения импортов, запущенных с момента старта приложения.
+     *
+     * @return Ответ со списком отчетов об импорте и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X GET http://localhost:8080/import/progress
+     */
+    @GetMapping("/progress")
+    public ResponseEntity<List<ImportReportDTO>> getImportProgress() {
+        return new ResponseEntity<>(catalogImportService.findAllImports(), HttpStatus.OK);
+    }
+}
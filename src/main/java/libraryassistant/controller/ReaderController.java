@@ -1,6 +1,9 @@
 package libraryassistant.controller;
 
+import libraryassistant.dto.BulkItemResultDTO;
+import libraryassistant.dto.CursorPage;
 import libraryassistant.dto.ReaderDTO;
+import libraryassistant.pagination.Cursors;
 import libraryassistant.service.ReaderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -29,6 +32,19 @@ public class ReaderController {
         return new ResponseEntity<>(readerService.createReader(readerDTO), HttpStatus.CREATED);
     }
 
+    /**
+     * Массовое создание читателей.
+     *
+     * @param readerDTOs Список DTO читателей для создания.
+     * @return Ответ с результатом по каждому читателю (CREATED или DUPLICATE) в порядке запроса и статусом 200 (OK).
+     * Пример запроса:
+     * curl -X POST http://localhost:8080/readers/bulk -H "Content-Type: application/json" -d "[{\"firstName\":\"name1\", \"secondName\":\"name11\", \"birthDate\":\"2000-01-01\"}]"
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<List<BulkItemResultDTO<ReaderDTO>>> createReaders(@RequestBody List<ReaderDTO> readerDTOs) {
+        return new ResponseEntity<>(readerService.createReaders(readerDTOs), HttpStatus.OK);
+    }
+
     /**
      * Обновление читателя.
      *
@@ -71,15 +87,20 @@ public class ReaderController {
     }
 
     /**
-     * Поиск всех читателей.
+     * Постраничный поиск всех читателей.
      *
-     * @return Ответ с списком всех читателей и статусом 200 (OK).
+     * @param after Курсор из заголовка X-Next-Cursor предыдущей страницы, для первой страницы не передается.
+     * @param limit Размер страницы (не больше 1000).
+     * @return Ответ со страницей читателей, курсором следующей страницы в заголовке X-Next-Cursor и статусом 200 (OK).
      * Пример запроса:
-     * curl -X GET http://localhost:8080/readers
+     * curl -i -X GET "http://localhost:8080/readers?limit=100"
+     * curl -i -X GET "http://localhost:8080/readers?limit=100&after={input cursor}"
      */
     @GetMapping
-    public ResponseEntity<List<ReaderDTO>> getAllReaders() {
-        return new ResponseEntity<>(readerService.findAllReaders(), HttpStatus.OK);
+    public ResponseEntity<List<ReaderDTO>> getAllReaders(@RequestParam(required = false) String after,
+                                                         @RequestParam(defaultValue = "" + Cursors.DEFAULT_LIMIT) int limit) {
+        CursorPage<ReaderDTO> page = readerService.findAllReaders(after, limit);
+        return new ResponseEntity<>(page.getItems(), Cursors.headers(page), HttpStatus.OK);
     }
 
     /**
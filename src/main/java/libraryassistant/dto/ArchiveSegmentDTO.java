@@ -0,0 +1,21 @@
+package libraryassistant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArchiveSegmentDTO {
+    private String name;
+    //период событий сегмента [fromDate, toDate)
+    private LocalDateTime fromDate;
+    private LocalDateTime toDate;
+    private long rows;
+    private long bytes;
+}
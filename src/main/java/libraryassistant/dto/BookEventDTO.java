@@ -2,17 +2,31 @@ package libraryassistant.dto;
 
 import libraryassistant.entities.EventType;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 
 @Getter
 @Setter
+@NoArgsConstructor
 public class BookEventDTO {
     private UUID id;
     private LocalDateTime eventDate;
     private EventType eventType;
     private ReaderDTO reader;
     private BookDTO book;
+
+    // используется в JPQL-проекциях select new, чтобы читать события вместе с читателем и книгой одним запросом
+    public BookEventDTO(UUID id, LocalDateTime eventDate, EventType eventType,
+                        UUID readerId, String firstName, String secondName, LocalDate birthDate,
+                        UUID bookId, String title, String author) {
+        this.id = id;
+        this.eventDate = eventDate;
+        this.eventType = eventType;
+        this.reader = new ReaderDTO(readerId, firstName, secondName, birthDate);
+        this.book = new BookDTO(bookId, title, author);
+    }
 }
\ No newline at end of file
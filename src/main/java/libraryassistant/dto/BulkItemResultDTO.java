@@ -0,0 +1,18 @@
+package libraryassistant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkItemResultDTO<T> {
+    //позиция элемента в запросе
+    private int index;
+    private BulkItemStatus status;
+    private T item;
+    private String message;
+}
@@ -0,0 +1,7 @@
+package libraryassistant.dto;
+
+public enum BulkItemStatus {
+    CREATED,
+    DUPLICATE,
+    REJECTED
+}
@@ -0,0 +1,20 @@
+package libraryassistant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatsDTO {
+    private String name;
+    private long size;
+    private long hits;
+    private long misses;
+    //-1, если кэш не ведет этот счетчик
+    private long evictions;
+    private double hitRate;
+}
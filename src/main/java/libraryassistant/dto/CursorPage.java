@@ -0,0 +1,14 @@
+package libraryassistant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    //курсор следующей страницы, null если страница последняя
+    private String nextCursor;
+}
@@ -0,0 +1,19 @@
+package libraryassistant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventPartitionDTO {
+    private String name;
+    //границы секции [fromDate, toDate), у секции по умолчанию null
+    private LocalDate fromDate;
+    private LocalDate toDate;
+}
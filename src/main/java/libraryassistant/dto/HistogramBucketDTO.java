@@ -0,0 +1,19 @@
+package libraryassistant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class HistogramBucketDTO {
+    //начало корзины, корзина - [bucketStart, начало следующей)
+    private LocalDateTime bucketStart;
+    private long borrows;
+    private long returns;
+}
@@ -0,0 +1,49 @@
+package libraryassistant.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+public enum HistogramGranularity {
+    HOUR("hour"),
+    DAY("day"),
+    //неделя начинается с понедельника, как у date_trunc('week', ...) в PostgreSQL
+    WEEK("week");
+
+    private final String sqlUnit;
+
+    HistogramGranularity(String sqlUnit) {
+        this.sqlUnit = sqlUnit;
+    }
+
+    public String sqlUnit() {
+        return sqlUnit;
+    }
+
+    // без учета регистра: hour, Day и WEEK равнозначны
+    public static HistogramGranularity of(String value) {
+        for (HistogramGranularity granularity : values()) {
+            if (granularity.sqlUnit.equalsIgnoreCase(value.trim())) {
+                return granularity;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный размер корзины: " + value);
+    }
+
+    public LocalDateTime truncate(LocalDateTime dateTime) {
+        return switch (this) {
+            case HOUR -> dateTime.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> dateTime.truncatedTo(ChronoUnit.DAYS);
+            case WEEK -> dateTime.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        };
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return switch (this) {
+            case HOUR -> bucketStart.plusHours(1);
+            case DAY -> bucketStart.plusDays(1);
+            case WEEK -> bucketStart.plusWeeks(1);
+        };
+    }
+}
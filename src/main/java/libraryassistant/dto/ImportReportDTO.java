@@ -0,0 +1,21 @@
+package libraryassistant.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class ImportReportDTO {
+    private String file;
+    private String table;
+    //строка файла, с которой продолжен импорт после сбоя (0 - импорт с начала)
+    private long resumedFromRow;
+    private long rowsRead;
+    private long rowsInserted;
+    private long rowsRejected;
+    private boolean copyUsed;
+    private boolean finished;
+    private long elapsedMs;
+}
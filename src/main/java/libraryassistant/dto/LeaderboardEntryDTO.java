@@ -0,0 +1,17 @@
+package libraryassistant.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LeaderboardEntryDTO<T> {
+    //место в рейтинге, с 1
+    private int rank;
+    private T item;
+    private long count;
+}
@@ -0,0 +1,26 @@
+package libraryassistant.dto;
+
+import java.time.Duration;
+
+public enum LeaderboardWindow {
+    //последние сутки корзинами по 5 минут
+    LAST_24H(Duration.ofHours(24), Duration.ofMinutes(5)),
+    //последние 7 дней корзинами по часу
+    LAST_7D(Duration.ofDays(7), Duration.ofHours(1));
+
+    private final Duration length;
+    private final Duration bucket;
+
+    LeaderboardWindow(Duration length, Duration bucket) {
+        this.length = length;
+        this.bucket = bucket;
+    }
+
+    public Duration length() {
+        return length;
+    }
+
+    public Duration bucket() {
+        return bucket;
+    }
+}
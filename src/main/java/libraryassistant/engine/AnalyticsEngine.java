@@ -0,0 +1,443 @@
+package libraryassistant.engine;
+
+import jakarta.annotation.PostConstruct;
+import libraryassistant.archive.ArchiveSegment;
+import libraryassistant.archive.EventArchive;
+import libraryassistant.entities.EventType;
+import libraryassistant.repository.projection.IdCount;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Журнал событий в памяти процесса в виде колонок примитивов для аналитики за произвольный период.
+ * Колонки: время в мс (по возрастанию), код книги, код читателя, тип события; дата рождения читателя
+ * хранится по коду читателя (номер дня от эпохи) и обновляется при изменении читателя. Период находится
+ * двоичным поиском, подсчет идет параллельно в fork-join пуле по массивам long[] без упаковки.
+ * Наполняется при старте из базы (и архива, если он включен), затем событиями из BookEventService
+ * после фиксации транзакций.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "library.analytics-engine", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class AnalyticsEngine {
+    // меньшие куски считаются в одном потоке; большие делятся примерно на число потоков пула,
+    // чтобы массив счетчиков на кусок и слияние массивов при join не множились по числу мелких кусков
+    private static final int SPLIT_THRESHOLD = 1 << 15;
+    private static final int NO_BIRTH_DATE = Integer.MIN_VALUE;
+    private static final byte BORROW = (byte) EventType.BORROW.ordinal();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Optional<EventArchive> eventArchive;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<UUID, Integer> bookCodes = new HashMap<>();
+    private final Map<UUID, Integer> readerCodes = new HashMap<>();
+    private UUID[] books = new UUID[1024];
+    private UUID[] readers = new UUID[1024];
+    private int[] readerBirthDays = new int[1024];
+
+    private long[] timestamps = new long[1 << 16];
+    private int[] bookColumn = new int[1 << 16];
+    private int[] readerColumn = new int[1 << 16];
+    private byte[] typeColumn = new byte[1 << 16];
+    private int size;
+
+    @PostConstruct
+    public void reload() {
+        Columns loaded = new Columns();
+        Map<UUID, LocalDate> birthDates = new HashMap<>();
+        jdbcTemplate.query("select id, birth_date from readers",
+                (RowCallbackHandler) rs -> birthDates.put(rs.getObject(1, UUID.class), rs.getObject(2, LocalDate.class)));
+        lock.writeLock().lock();
+        try {
+            clear();
+            eventArchive.ifPresent(archive -> archive.forEachSegment(segment -> loadSegment(segment, birthDates, loaded)));
+            // курсор postgres с fetch size работает только внутри транзакции
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "select event_date, event_type, book_id, reader_id from events");
+                statement.setFetchSize(10_000);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                UUID readerId = rs.getObject(4, UUID.class);
+                loaded.add(toMillis(rs.getObject(1, LocalDateTime.class)), (byte) EventType.valueOf(rs.getString(2)).ordinal(),
+                        bookCode(rs.getObject(3, UUID.class)), readerCode(readerId, birthDates.get(readerId)));
+            }));
+            append(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Аналитический движок загружен: {} событий, {} книг, {} читателей", size, bookCodes.size(), readerCodes.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEventsSaved(BookEventsSavedEvent saved) {
+        lock.writeLock().lock();
+        try {
+            Columns batch = new Columns();
+            for (BookEventsSavedEvent.Row row : saved.events()) {
+                batch.add(toMillis(row.eventDate()), (byte) row.eventType().ordinal(),
+                        bookCode(row.bookId()), readerCode(row.readerId(), row.readerBirthDate()));
+            }
+            append(batch);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // читатель без событий в движке появится со своей датой рождения при первом событии
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReaderUpdated(ReaderUpdatedEvent updated) {
+        lock.writeLock().lock();
+        try {
+            Integer code = readerCodes.get(updated.readerId());
+            if (code != null) {
+                readerBirthDays[code] = birthDay(updated.birthDate());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // выдачи по книгам за [startDate, endDate], читатели с датой рождения строго между bornAfter и bornBefore (null - без границы)
+    public List<IdCount> countBooks(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] counts = count(startDate, endDate, bornAfter, bornBefore, true);
+            return top(counts, books, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // все события по читателям за [startDate, endDate] с тем же фильтром по дате рождения
+    public List<IdCount> countReaders(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] counts = count(startDate, endDate, bornAfter, bornBefore, false);
+            return top(counts, readers, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<UUID> findMostPopularBookId(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore) {
+        return countBooks(startDate, endDate, bornAfter, bornBefore, 1).stream().findFirst().map(IdCount::getId);
+    }
+
+    public Optional<UUID> findMostActiveReaderId(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore) {
+        return countReaders(startDate, endDate, bornAfter, bornBefore, 1).stream().findFirst().map(IdCount::getId);
+    }
+
+    private long[] count(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore, boolean byBook) {
+        int from = lowerBound(toMillis(startDate));
+        int to = lowerBound(toMillis(endDate) + 1);
+        int afterDay = bornAfter == null ? NO_BIRTH_DATE : (int) bornAfter.toEpochDay();
+        int beforeDay = bornBefore == null ? Integer.MAX_VALUE : (int) bornBefore.toEpochDay();
+        boolean filtered = bornAfter != null || bornBefore != null;
+        // invoke из потока fork-join пула выполняется в этом пуле, иначе в общем
+        int parallelism = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+        int chunk = Math.max(SPLIT_THRESHOLD, (to - from + parallelism - 1) / parallelism);
+        return new CountTask(byBook, filtered, afterDay, beforeDay, from, to, chunk, byBook ? bookCodes.size() : readerCodes.size()).invoke();
+    }
+
+    private final class CountTask extends RecursiveTask<long[]> {
+        private final boolean byBook;
+        private final boolean filtered;
+        private final int afterDay;
+        private final int beforeDay;
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final int codes;
+
+        private CountTask(boolean byBook, boolean filtered, int afterDay, int beforeDay, int from, int to, int chunk, int codes) {
+            this.byBook = byBook;
+            this.filtered = filtered;
+            this.afterDay = afterDay;
+            this.beforeDay = beforeDay;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.codes = codes;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= chunk) {
+                return countRange();
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(byBook, filtered, afterDay, beforeDay, from, mid, chunk, codes);
+            left.fork();
+            long[] right = new CountTask(byBook, filtered, afterDay, beforeDay, mid, to, chunk, codes).compute();
+            long[] counts = left.join();
+            for (int i = 0; i < codes; i++) {
+                counts[i] += right[i];
+            }
+            return counts;
+        }
+
+        private long[] countRange() {
+            long[] counts = new long[codes];
+            for (int i = from; i < to; i++) {
+                if (byBook && typeColumn[i] != BORROW) {
+                    continue;
+                }
+                if (filtered) {
+                    int birthDay = readerBirthDays[readerColumn[i]];
+                    if (birthDay == NO_BIRTH_DATE || birthDay <= afterDay || birthDay >= beforeDay) {
+                        continue;
+                    }
+                }
+                counts[byBook ? bookColumn[i] : readerColumn[i]]++;
+            }
+            return counts;
+        }
+    }
+
+    // K лучших за один проход по массиву счетчиков, K мало - вставкой в отсортированный буфер
+    private static List<IdCount> top(long[] counts, UUID[] ids, int limit) {
+        int k = Math.min(limit, counts.length);
+        if (k == 0) {
+            return List.of();
+        }
+        int[] best = new int[k];
+        int found = 0;
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] == 0 || (found == k && counts[code] <= counts[best[k - 1]])) {
+                continue;
+            }
+            int position = found < k ? found++ : k - 1;
+            while (position > 0 && counts[best[position - 1]] < counts[code]) {
+                best[position] = best[position - 1];
+                position--;
+            }
+            best[position] = code;
+        }
+        List<IdCount> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(new Total(ids[best[i]], counts[best[i]]));
+        }
+        return result;
+    }
+
+    // пачка сортируется по времени; если она не раньше последнего события - дописывается в конец,
+    // иначе колонки сливаются на месте с конца: сдвигаются только строки позже первого события пачки
+    private void append(Columns batch) {
+        batch.sort();
+        ensureCapacity(size + batch.size);
+        if (batch.size == 0) {
+            return;
+        }
+        if (size == 0 || batch.timestamps[0] >= timestamps[size - 1]) {
+            System.arraycopy(batch.timestamps, 0, timestamps, size, batch.size);
+            System.arraycopy(batch.books, 0, bookColumn, size, batch.size);
+            System.arraycopy(batch.readers, 0, readerColumn, size, batch.size);
+            System.arraycopy(batch.types, 0, typeColumn, size, batch.size);
+            size += batch.size;
+            return;
+        }
+        int left = size - 1;
+        int right = batch.size - 1;
+        for (int i = size + batch.size - 1; right >= 0; i--) {
+            // при равном времени уже загруженные строки остаются раньше строк пачки
+            if (left >= 0 && timestamps[left] > batch.timestamps[right]) {
+                timestamps[i] = timestamps[left];
+                bookColumn[i] = bookColumn[left];
+                readerColumn[i] = readerColumn[left];
+                typeColumn[i] = typeColumn[left];
+                left--;
+            } else {
+                timestamps[i] = batch.timestamps[right];
+                bookColumn[i] = batch.books[right];
+                readerColumn[i] = batch.readers[right];
+                typeColumn[i] = batch.types[right];
+                right--;
+            }
+        }
+        size += batch.size;
+    }
+
+    private void loadSegment(ArchiveSegment segment, Map<UUID, LocalDate> birthDates, Columns loaded) {
+        for (int row = 0; row < segment.rows(); row++) {
+            UUID readerId = segment.readerId(segment.readerCode(row));
+            loaded.add(segment.timestamp(row), (byte) segment.eventType(row).ordinal(),
+                    bookCode(segment.bookId(segment.bookCode(row))), readerCode(readerId, birthDates.get(readerId)));
+        }
+    }
+
+    private int bookCode(UUID bookId) {
+        Integer code = bookCodes.get(bookId);
+        if (code != null) {
+            return code;
+        }
+        int next = bookCodes.size();
+        if (next == books.length) {
+            books = Arrays.copyOf(books, next * 2);
+        }
+        books[next] = bookId;
+        bookCodes.put(bookId, next);
+        return next;
+    }
+
+    // дата рождения задается при создании кода, дальше ее меняет только onReaderUpdated: строка события
+    // могла быть собрана до изменения читателя и вернула бы старую дату
+    private int readerCode(UUID readerId, LocalDate birthDate) {
+        Integer code = readerCodes.get(readerId);
+        if (code == null) {
+            code = readerCodes.size();
+            if (code == readers.length) {
+                readers = Arrays.copyOf(readers, code * 2);
+                readerBirthDays = Arrays.copyOf(readerBirthDays, code * 2);
+            }
+            readers[code] = readerId;
+            readerCodes.put(readerId, code);
+            readerBirthDays[code] = birthDay(birthDate);
+        }
+        return code;
+    }
+
+    private static int birthDay(LocalDate birthDate) {
+        return birthDate == null ? NO_BIRTH_DATE : (int) birthDate.toEpochDay();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= timestamps.length) {
+            return;
+        }
+        int grown = Math.max(capacity, timestamps.length * 2);
+        timestamps = Arrays.copyOf(timestamps, grown);
+        bookColumn = Arrays.copyOf(bookColumn, grown);
+        readerColumn = Arrays.copyOf(readerColumn, grown);
+        typeColumn = Arrays.copyOf(typeColumn, grown);
+    }
+
+    private void clear() {
+        bookCodes.clear();
+        readerCodes.clear();
+        size = 0;
+    }
+
+    // первая строка с временем >= millis
+    private int lowerBound(long millis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private record Total(UUID id, long total) implements IdCount {
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    // пачка добавляемых строк, сортируется по времени перестановкой индексов
+    private static final class Columns {
+        private long[] timestamps = new long[256];
+        private int[] books = new int[256];
+        private int[] readers = new int[256];
+        private byte[] types = new byte[256];
+        private int size;
+
+        private void add(long timestamp, byte type, int book, int reader) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                books = Arrays.copyOf(books, size * 2);
+                readers = Arrays.copyOf(readers, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+            }
+            timestamps[size] = timestamp;
+            books[size] = book;
+            readers[size] = reader;
+            types[size] = type;
+            size++;
+        }
+
+        private void sort() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            mergeSort(order, new int[size], 0, size);
+            long[] sortedTimestamps = new long[size];
+            int[] sortedBooks = new int[size];
+            int[] sortedReaders = new int[size];
+            byte[] sortedTypes = new byte[size];
+            for (int i = 0; i < size; i++) {
+                sortedTimestamps[i] = timestamps[order[i]];
+                sortedBooks[i] = books[order[i]];
+                sortedReaders[i] = readers[order[i]];
+                sortedTypes[i] = types[order[i]];
+            }
+            timestamps = sortedTimestamps;
+            books = sortedBooks;
+            readers = sortedReaders;
+            types = sortedTypes;
+        }
+
+        private void mergeSort(int[] order, int[] buffer, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            mergeSort(order, buffer, from, mid);
+            mergeSort(order, buffer, mid, to);
+            if (timestamps[order[mid - 1]] <= timestamps[order[mid]]) {
+                return;
+            }
+            System.arraycopy(order, from, buffer, from, to - from);
+            for (int i = from, left = from, right = mid; i < to; i++) {
+                if (right == to || (left < mid && timestamps[buffer[left]] <= timestamps[buffer[right]])) {
+                    order[i] = buffer[left++];
+                } else {
+                    order[i] = buffer[right++];
+                }
+            }
+        }
+    }
+}
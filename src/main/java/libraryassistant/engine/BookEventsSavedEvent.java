@@ -0,0 +1,17 @@
+package libraryassistant.engine;
+
+import libraryassistant.entities.EventType;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Публикуется BookEventService после записи событий, слушатели получают его после фиксации транзакции.
+ */
+public record BookEventsSavedEvent(List<Row> events) {
+
+    public record Row(UUID bookId, UUID readerId, LocalDate readerBirthDate, LocalDateTime eventDate, EventType eventType) {
+    }
+}
@@ -0,0 +1,83 @@
+package libraryassistant.engine;
+
+import jakarta.annotation.PostConstruct;
+import libraryassistant.dto.LeaderboardWindow;
+import libraryassistant.entities.EventType;
+import libraryassistant.repository.projection.IdCount;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Живые рейтинги книг (по выдачам) и читателей (по всем событиям) за скользящие окна из {@link LeaderboardWindow}.
+ * При старте заполняются событиями за самое длинное окно, дальше обновляются событиями BookEventService
+ * после фиксации транзакций. Запрос рейтинга не обращается к базе и не зависит от числа событий.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.leaderboard", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LiveLeaderboards {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<LeaderboardWindow, SlidingWindowCounter> books = counters();
+    private final Map<LeaderboardWindow, SlidingWindowCounter> readers = counters();
+
+    @PostConstruct
+    public void load() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime from = now.minus(LeaderboardWindow.LAST_7D.length());
+        jdbcTemplate.query("select event_date, event_type, book_id, reader_id from events where event_date >= ? and event_date <= ?",
+                (RowCallbackHandler) rs -> add(rs.getObject(1, LocalDateTime.class), EventType.valueOf(rs.getString(2)),
+                        rs.getObject(3, UUID.class), rs.getObject(4, UUID.class), now), from, now);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEventsSaved(BookEventsSavedEvent saved) {
+        LocalDateTime now = LocalDateTime.now();
+        for (BookEventsSavedEvent.Row row : saved.events()) {
+            add(row.eventDate(), row.eventType(), row.bookId(), row.readerId(), now);
+        }
+    }
+
+    public List<IdCount> topBooks(LeaderboardWindow window, int limit) {
+        return books.get(window).top(limit, toMillis(LocalDateTime.now()));
+    }
+
+    public List<IdCount> topReaders(LeaderboardWindow window, int limit) {
+        return readers.get(window).top(limit, toMillis(LocalDateTime.now()));
+    }
+
+    private void add(LocalDateTime eventDate, EventType eventType, UUID bookId, UUID readerId, LocalDateTime now) {
+        long eventMillis = toMillis(eventDate);
+        long nowMillis = toMillis(now);
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            if (eventType == EventType.BORROW) {
+                books.get(window).add(bookId, eventMillis, nowMillis);
+            }
+            readers.get(window).add(readerId, eventMillis, nowMillis);
+        }
+    }
+
+    private static Map<LeaderboardWindow, SlidingWindowCounter> counters() {
+        Map<LeaderboardWindow, SlidingWindowCounter> counters = new EnumMap<>(LeaderboardWindow.class);
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            counters.put(window, new SlidingWindowCounter(window.length().toMillis(), window.bucket().toMillis()));
+        }
+        return counters;
+    }
+
+    // время событий - локальное время сервера без зоны, как в LocalDateTime.now() при записи
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
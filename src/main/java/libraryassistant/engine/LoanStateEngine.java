@@ -0,0 +1,151 @@
+package libraryassistant.engine;
+
+import jakarta.annotation.PostConstruct;
+import libraryassistant.entities.BookEvent;
+import libraryassistant.entities.BookLoanState;
+import libraryassistant.entities.EventType;
+import libraryassistant.repository.BookLoanStateRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Состояние выдачи книг в памяти процесса.
+ * Выдача и возврат резервируют запись книги compare-and-set без блокировок, затем решение принимает база,
+ * и запись книги принимает состояние из ее ответа. Если по записи движка операция невозможна, база все равно
+ * спрашивается: запись могла отстать (откат чужой транзакции, второй экземпляр приложения).
+ * При откате транзакции запись перечитывается из book_loan_state, а не восстанавливается из запомненного значения:
+ * пока транзакция шла, запись могли изменить другие.
+ * Таблица book_loan_state остается источником истины, движок загружается из нее же: журнал events после
+ * архивации старых событий неполон.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.loan-engine", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LoanStateEngine {
+
+    private final BookLoanStateRepository bookLoanStateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // при перезагрузке заполняется новая карта и подменяет текущую целиком, операции не видят ее частично заполненной
+    private volatile ConcurrentHashMap<UUID, Loan> loans = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void reload() {
+        ConcurrentHashMap<UUID, Loan> reloaded = new ConcurrentHashMap<>();
+        for (BookLoanState state : bookLoanStateRepository.findAll()) {
+            if (state.getLastEventType() != null) {
+                reloaded.put(state.getBookId(), new Loan(state.getReaderId(), state.getLastEventType(), state.getLastEventDate()));
+            }
+        }
+        loans = reloaded;
+    }
+
+    public boolean isBookBorrowed(UUID bookId) {
+        Loan loan = loans.get(bookId);
+        return loan != null && loan.eventType() == EventType.BORROW;
+    }
+
+    // store записывает операцию в базу и возвращает дату, с которой та ее приняла (она может быть сдвинута
+    // за предыдущее событие), или пусто, если база операцию отклонила
+    public Optional<LocalDateTime> tryBorrow(UUID bookId, UUID readerId, LocalDateTime eventDate,
+                                             Function<LocalDateTime, Optional<LocalDateTime>> store) {
+        return execute(bookId, new Loan(readerId, EventType.BORROW, eventDate),
+                current -> current == null || current.eventType() != EventType.BORROW, store);
+    }
+
+    public Optional<LocalDateTime> tryReturn(UUID bookId, UUID readerId, LocalDateTime eventDate,
+                                             Function<LocalDateTime, Optional<LocalDateTime>> store) {
+        return execute(bookId, new Loan(readerId, EventType.RETURN, eventDate),
+                current -> current != null && current.eventType() == EventType.BORROW, store);
+    }
+
+    // событие без проверки меняет состояние, только если оно не старее текущего
+    public void apply(BookEvent event) {
+        UUID bookId = event.getBook().getId();
+        Loan next = new Loan(event.getReader().getId(), event.getEventType(), event.getEventDate());
+        ConcurrentHashMap<UUID, Loan> loans = this.loans;
+        resyncOnRollback(loans, bookId);
+        while (true) {
+            Loan current = loans.get(bookId);
+            if (current != null && current.eventDate().isAfter(next.eventDate())) {
+                return;
+            }
+            if (compareAndSet(loans, bookId, current, next)) {
+                return;
+            }
+        }
+    }
+
+    // резерв делает операцию видимой в isBookBorrowed еще до ответа базы; строка book_loan_state заблокирована
+    // до конца транзакции, поэтому записанный после ответа результат не перетрет чужой более поздний
+    private Optional<LocalDateTime> execute(UUID bookId, Loan requested, Predicate<Loan> allowed,
+                                            Function<LocalDateTime, Optional<LocalDateTime>> store) {
+        ConcurrentHashMap<UUID, Loan> loans = this.loans;
+        resyncOnRollback(loans, bookId);
+        Loan current = loans.get(bookId);
+        if (allowed.test(current)) {
+            compareAndSet(loans, bookId, current, requested);
+        }
+        Optional<LocalDateTime> recorded = store.apply(requested.eventDate());
+        if (recorded.isPresent()) {
+            loans.put(bookId, new Loan(requested.readerId(), requested.eventType(), recorded.get()));
+        } else {
+            resync(loans, bookId);
+        }
+        return recorded;
+    }
+
+    private static boolean compareAndSet(ConcurrentHashMap<UUID, Loan> loans, UUID bookId, Loan expected, Loan next) {
+        return expected == null ? loans.putIfAbsent(bookId, next) == null : loans.replace(bookId, expected, next);
+    }
+
+    // перечитывается карта, в которой шла операция; после перезагрузки она уже не используется
+    private void resyncOnRollback(ConcurrentHashMap<UUID, Loan> loans, UUID bookId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                // ресурсы завершенной транзакции еще привязаны к потоку, чтение идет в новой
+                TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+                requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                requiresNew.setReadOnly(true);
+                requiresNew.executeWithoutResult(tx -> resync(loans, bookId));
+            }
+        });
+    }
+
+    private void resync(ConcurrentHashMap<UUID, Loan> loans, UUID bookId) {
+        List<Loan> states = jdbcTemplate.query("""
+                        select reader_id, last_event_type, last_event_date from book_loan_state
+                        where book_id = ? and last_event_type is not null""",
+                (rs, rowNum) -> new Loan(rs.getObject(1, UUID.class), EventType.valueOf(rs.getString(2)),
+                        rs.getObject(3, LocalDateTime.class)), bookId);
+        if (states.isEmpty()) {
+            loans.remove(bookId);
+        } else {
+            loans.put(bookId, states.get(0));
+        }
+    }
+
+    private record Loan(UUID readerId, EventType eventType, LocalDateTime eventDate) {
+    }
+}
@@ -0,0 +1,11 @@
+package libraryassistant.engine;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Публикуется ReaderService после изменения читателя, чтобы кэши по читателю (дата рождения
+ * в аналитическом движке) не ждали следующего события этого читателя.
+ */
+public record ReaderUpdatedEvent(UUID readerId, LocalDate birthDate) {
+}
@@ -0,0 +1,121 @@
+package libraryassistant.engine;
+
+import libraryassistant.repository.projection.IdCount;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Счетчики по id за скользящее окно из кольца корзин фиксированной длины.
+ * Корзина, вышедшая из окна, вычитается из итогов целиком, поэтому стоимость не зависит от числа событий.
+ * Итоги дополнительно держатся упорядоченными по убыванию, и первые N берутся без прохода по всем id.
+ * Окно двигается по корзинам: фактически оно покрывает от (длина - корзина) до длины окна.
+ */
+public final class SlidingWindowCounter {
+    private static final Comparator<Total> RANKING = Comparator.comparingLong(Total::total).reversed()
+            .thenComparing(Total::id);
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final List<Map<UUID, Long>> ring;
+    private final long[] ringBucket;
+    private final Map<UUID, Long> totals = new HashMap<>();
+    private final TreeSet<Total> ranking = new TreeSet<>(RANKING);
+    private long currentBucket = Long.MIN_VALUE;
+
+    public SlidingWindowCounter(long windowMillis, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = Math.toIntExact(windowMillis / bucketMillis);
+        this.ring = new ArrayList<>(buckets);
+        this.ringBucket = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            ring.add(new HashMap<>());
+            ringBucket[i] = Long.MIN_VALUE;
+        }
+    }
+
+    // события вне окна (старые или из будущего) не учитываются
+    public synchronized void add(UUID id, long eventMillis, long nowMillis) {
+        advance(nowMillis);
+        long bucket = Math.floorDiv(eventMillis, bucketMillis);
+        if (bucket > currentBucket || bucket <= currentBucket - buckets) {
+            return;
+        }
+        int slot = slot(bucket);
+        ringBucket[slot] = bucket;
+        ring.get(slot).merge(id, 1L, Long::sum);
+        change(id, 1);
+    }
+
+    public synchronized List<IdCount> top(int limit, long nowMillis) {
+        advance(nowMillis);
+        List<IdCount> top = new ArrayList<>(Math.min(limit, ranking.size()));
+        Iterator<Total> iterator = ranking.iterator();
+        while (top.size() < limit && iterator.hasNext()) {
+            top.add(iterator.next());
+        }
+        return top;
+    }
+
+    private void advance(long nowMillis) {
+        long now = Math.floorDiv(nowMillis, bucketMillis);
+        if (now <= currentBucket) {
+            return;
+        }
+        if (currentBucket == Long.MIN_VALUE || now - currentBucket >= buckets) {
+            // окно сдвинулось целиком
+            for (int slot = 0; slot < buckets; slot++) {
+                ring.get(slot).clear();
+                ringBucket[slot] = Long.MIN_VALUE;
+            }
+            totals.clear();
+            ranking.clear();
+        } else {
+            for (long expired = currentBucket - buckets + 1; expired <= now - buckets; expired++) {
+                int slot = slot(expired);
+                if (ringBucket[slot] == expired) {
+                    ring.get(slot).forEach((id, count) -> change(id, -count));
+                    ring.get(slot).clear();
+                    ringBucket[slot] = Long.MIN_VALUE;
+                }
+            }
+        }
+        currentBucket = now;
+    }
+
+    private void change(UUID id, long delta) {
+        Long previous = totals.get(id);
+        if (previous != null) {
+            ranking.remove(new Total(id, previous));
+        }
+        long next = (previous == null ? 0 : previous) + delta;
+        if (next > 0) {
+            totals.put(id, next);
+            ranking.add(new Total(id, next));
+        } else {
+            totals.remove(id);
+        }
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets);
+    }
+
+    public record Total(UUID id, long total) implements IdCount {
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public long getTotal() {
+            return total;
+        }
+    }
+}
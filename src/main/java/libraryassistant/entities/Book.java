@@ -2,9 +2,10 @@ package libraryassistant.entities;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import libraryassistant.id.TimeOrderedUuid;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 import java.util.UUID;
@@ -13,9 +14,11 @@ import java.util.UUID;
 @Getter
 @Setter
 @Table(name = "books")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Book {
     @Id
-    @UuidGenerator
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(name = "title")
@@ -1,9 +1,9 @@
 package libraryassistant.entities;
 
 import jakarta.persistence.*;
+import libraryassistant.id.TimeOrderedUuid;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.UuidGenerator;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -12,20 +12,26 @@ import java.util.UUID;
 @Setter
 @Table(name = "events")
 public class BookEvent {
+    // имена внешних ключей, по ним нарушение ограничения переводится в "не найден"
+    public static final String READER_FK = "fk_events_reader";
+    public static final String BOOK_FK = "fk_events_book";
+
     @Id
-    @UuidGenerator
+    @TimeOrderedUuid
     private UUID id;
 
     //один читатель может учавствовать в нескольких ивентах
-    @ManyToOne
-    @JoinColumn(name = "reader_id", nullable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "reader_id", nullable = false, foreignKey = @ForeignKey(name = READER_FK))
     private Reader reader;
 
     //одна книга может учавствовать в нескольких ивентах
-    @ManyToOne
-    @JoinColumn(name = "book_id", nullable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id", nullable = false, foreignKey = @ForeignKey(name = BOOK_FK))
     private Book book;
 
+    //ключ секционирования таблицы events по месяцам
+    @Column(nullable = false)
     private LocalDateTime eventDate;
 
     @Enumerated(EnumType.STRING)
@@ -0,0 +1,31 @@
+package libraryassistant.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "book_loan_state")
+public class BookLoanState {
+    @Id
+    @Column(name = "book_id")
+    private UUID bookId;
+
+    //текущий держатель книги, null если книга не выдана
+    @Column(name = "reader_id")
+    private UUID readerId;
+
+    //null, если по книге еще не было событий
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_event_type")
+    private EventType lastEventType;
+
+    //с какого момента действует текущее состояние
+    @Column(name = "last_event_date")
+    private LocalDateTime lastEventDate;
+}
@@ -0,0 +1,18 @@
+package libraryassistant.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "daily_book_stats")
+public class DailyBookStats {
+    @EmbeddedId
+    private DailyBookStatsId id;
+
+    //количество выдач книги за день
+    @Column(name = "borrow_count", nullable = false)
+    private long borrowCount;
+}
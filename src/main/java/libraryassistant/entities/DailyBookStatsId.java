@@ -0,0 +1,27 @@
+package libraryassistant.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Embeddable
+@Getter
+@Setter
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class DailyBookStatsId implements Serializable {
+    @Column(name = "day")
+    private LocalDate day;
+
+    @Column(name = "book_id")
+    private UUID bookId;
+}
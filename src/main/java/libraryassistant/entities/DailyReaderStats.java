@@ -0,0 +1,18 @@
+package libraryassistant.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+@Entity
+@Getter
+@Setter
+@Table(name = "daily_reader_stats")
+public class DailyReaderStats {
+    @EmbeddedId
+    private DailyReaderStatsId id;
+
+    //количество событий читателя за день (и выдачи, и возвраты)
+    @Column(name = "event_count", nullable = false)
+    private long eventCount;
+}
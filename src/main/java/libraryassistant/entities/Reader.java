@@ -2,9 +2,10 @@ package libraryassistant.entities;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import libraryassistant.id.TimeOrderedUuid;
 import lombok.Getter;
 import lombok.Setter;
-import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -14,9 +15,11 @@ import java.util.UUID;
 @Getter
 @Setter
 @Table(name = "readers")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Reader {
     @Id
-    @UuidGenerator
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(name = "first_name")
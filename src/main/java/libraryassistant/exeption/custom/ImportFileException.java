@@ -0,0 +1,7 @@
+package libraryassistant.exeption.custom;
+
+public class ImportFileException extends RuntimeException {
+    public ImportFileException(String message) {
+        super(message);
+    }
+}
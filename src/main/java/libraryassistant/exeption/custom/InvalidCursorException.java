@@ -0,0 +1,7 @@
+package libraryassistant.exeption.custom;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package libraryassistant.exeption.custom;
+
+public class InvalidEventException extends RuntimeException {
+    public InvalidEventException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package libraryassistant.exeption.custom;
+
+public class InvalidHistogramRangeException extends RuntimeException {
+    public InvalidHistogramRangeException(String message) {
+        super(message);
+    }
+}
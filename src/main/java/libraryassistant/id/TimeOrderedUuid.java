@@ -0,0 +1,18 @@
+package libraryassistant.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Первичный ключ UUID версии 7: старшие 48 бит - время в миллисекундах, поэтому новые ключи
+ * добавляются в правый край индекса, а не на случайную страницу B-дерева, как UUIDv4.
+ */
+@IdGeneratorType(TimeOrderedUuidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedUuid {
+}
@@ -0,0 +1,44 @@
+package libraryassistant.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор UUIDv7 (RFC 9562).
+ * Раскладка: 48 бит unix-времени в мс, версия 7, 12 бит счетчика внутри миллисекунды, вариант, 62 случайных бита.
+ * Счетчик делает ключи одного процесса строго возрастающими; при его переполнении время сдвигается
+ * на 1 мс вперед, а не назад.
+ */
+public class TimeOrderedUuidGenerator implements BeforeExecutionGenerator {
+    private static final int COUNTER_BITS = 12;
+
+    // время в мс, сдвинутое на COUNTER_BITS, плюс счетчик
+    private static final AtomicLong STATE = new AtomicLong();
+
+    public static UUID next() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long state = STATE.updateAndGet(previous -> now > previous ? now : previous + 1);
+        long timestamp = state >>> COUNTER_BITS;
+        long counter = state & ((1L << COUNTER_BITS) - 1);
+        long mostSigBits = (timestamp << 16) | 0x7000L | counter;
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
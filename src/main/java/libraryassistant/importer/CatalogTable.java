@@ -0,0 +1,78 @@
+package libraryassistant.importer;
+
+/**
+ * Таблицы, которые можно загружать из CSV.
+ * Строки сначала попадают во временную таблицу (COPY или JDBC-батчем), затем одним запросом переносятся
+ * в основную таблицу без дубликатов - и внутри пачки, и с уже существующими записями.
+ */
+public enum CatalogTable {
+    BOOKS(2,
+            "create temp table if not exists import_books_stage (title varchar(255), author varchar(255)) on commit delete rows",
+            "insert into import_books_stage (title, author) values (?, ?)",
+            "copy import_books_stage (title, author) from stdin with (format csv)",
+            """
+            insert into books (id, title, author)
+            select uuid_v7(), s.title, s.author
+            from (select distinct on (title) title, author from import_books_stage where title is not null order by title) s
+            where not exists (select 1 from books b where b.title = s.title)
+            """),
+    READERS(3,
+            "create temp table if not exists import_readers_stage (first_name varchar(255), second_name varchar(255), birth_date date) on commit delete rows",
+            "insert into import_readers_stage (first_name, second_name, birth_date) values (?, ?, ?)",
+            "copy import_readers_stage (first_name, second_name, birth_date) from stdin with (format csv)",
+            """
+            insert into readers (id, first_name, second_name, birth_date)
+            select uuid_v7(), s.first_name, s.second_name, s.birth_date
+            from (select distinct on (first_name, second_name) first_name, second_name, birth_date
+                  from import_readers_stage
+                  where first_name is not null and second_name is not null
+                  order by first_name, second_name) s
+            where not exists (select 1 from readers r where r.first_name = s.first_name and r.second_name = s.second_name)
+            """);
+
+    private final int columns;
+    private final String createStageSql;
+    private final String insertStageSql;
+    private final String copyStageSql;
+    private final String mergeSql;
+
+    CatalogTable(int columns, String createStageSql, String insertStageSql, String copyStageSql, String mergeSql) {
+        this.columns = columns;
+        this.createStageSql = createStageSql;
+        this.insertStageSql = insertStageSql;
+        this.copyStageSql = copyStageSql;
+        this.mergeSql = mergeSql;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public String createStageSql() {
+        return createStageSql;
+    }
+
+    public String insertStageSql() {
+        return insertStageSql;
+    }
+
+    public String copyStageSql() {
+        return copyStageSql;
+    }
+
+    public String mergeSql() {
+        return mergeSql;
+    }
+
+    public boolean accepts(CsvRowReader row) {
+        return row.fieldCount() == columns && (this == BOOKS || row.date(2) != null);
+    }
+
+    // значения строки для JDBC-батча
+    public Object[] values(CsvRowReader row) {
+        if (this == BOOKS) {
+            return new Object[]{row.string(0), row.string(1)};
+        }
+        return new Object[]{row.string(0), row.string(1), row.date(2)};
+    }
+}
@@ -0,0 +1,196 @@
+package libraryassistant.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Построчное чтение CSV через буферизованный FileChannel.
+ * Строка и границы полей хранятся в переиспользуемых массивах, в String декодируются только запрошенные поля,
+ * а для COPY строка передается как есть, без декодирования.
+ * Поддерживаются поля в кавычках с экранированием "" и переводами строк внутри кавычек.
+ */
+public final class CsvRowReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private int[] fieldStart = new int[8];
+    private int[] fieldEnd = new int[8];
+    private boolean[] fieldEscaped = new boolean[8];
+    private int fieldCount;
+    // смещение в файле сразу после последней прочитанной строки
+    private long position;
+
+    public CsvRowReader(Path file, long offset) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        position = offset;
+        buffer.flip();
+    }
+
+    public boolean next() throws IOException {
+        do {
+            if (!readLine()) {
+                return false;
+            }
+        } while (lineLength == 0);
+        split();
+        return true;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public String string(int field) {
+        int length = fieldEnd[field] - fieldStart[field];
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(line, fieldStart[field], length, StandardCharsets.UTF_8);
+        return fieldEscaped[field] ? value.replace("\"\"", "\"") : value;
+    }
+
+    // дата в формате yyyy-MM-dd разбирается прямо из байтов
+    public LocalDate date(int field) {
+        int start = fieldStart[field];
+        if (fieldEnd[field] - start != 10 || line[start + 4] != '-' || line[start + 7] != '-') {
+            return null;
+        }
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    public void writeLine(OutputStream out) throws IOException {
+        out.write(line, 0, lineLength);
+        out.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean inQuotes = false;
+        boolean read = false;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int count = channel.read(buffer);
+                buffer.flip();
+                if (count <= 0) {
+                    break;
+                }
+            }
+            byte b = buffer.get();
+            position++;
+            read = true;
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                break;
+            }
+            append(b);
+        }
+        if (lineLength > 0 && line[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        return read;
+    }
+
+    private void append(byte b) {
+        if (lineLength == line.length) {
+            line = Arrays.copyOf(line, line.length * 2);
+        }
+        line[lineLength++] = b;
+    }
+
+    private void split() {
+        fieldCount = 0;
+        int i = 0;
+        while (true) {
+            ensureFieldCapacity();
+            if (i < lineLength && line[i] == '"') {
+                int start = ++i;
+                boolean escaped = false;
+                while (i < lineLength) {
+                    if (line[i] == '"') {
+                        if (i + 1 < lineLength && line[i + 1] == '"') {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                addField(start, i, escaped);
+                while (i < lineLength && line[i] != ',') {
+                    i++;
+                }
+            } else {
+                int start = i;
+                while (i < lineLength && line[i] != ',') {
+                    i++;
+                }
+                addField(start, i, false);
+            }
+            if (i >= lineLength) {
+                return;
+            }
+            i++;
+        }
+    }
+
+    private void addField(int start, int end, boolean escaped) {
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount] = end;
+        fieldEscaped[fieldCount] = escaped;
+        fieldCount++;
+    }
+
+    private void ensureFieldCapacity() {
+        if (fieldCount == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+            fieldEscaped = Arrays.copyOf(fieldEscaped, fieldCount * 2);
+        }
+    }
+
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            if (line[i] < '0' || line[i] > '9') {
+                return -1;
+            }
+            value = value * 10 + (line[i] - '0');
+        }
+        return value;
+    }
+}
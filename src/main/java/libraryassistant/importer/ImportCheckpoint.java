@@ -0,0 +1,43 @@
+package libraryassistant.importer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Точка продолжения импорта: смещение в файле и число обработанных строк после последней зафиксированной пачки.
+ * Хранится рядом с файлом импорта в файле с суффиксом .checkpoint и удаляется после успешного завершения.
+ */
+public record ImportCheckpoint(long offset, long rows, long fileSize) {
+
+    public static Optional<ImportCheckpoint> load(Path file) throws IOException {
+        Path path = pathFor(file);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        String[] values = Files.readString(path).trim().split(",");
+        ImportCheckpoint checkpoint = new ImportCheckpoint(Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2]));
+        // файл заменили другим - начинаем сначала
+        if (checkpoint.fileSize() != Files.size(file) || checkpoint.offset() > checkpoint.fileSize()) {
+            return Optional.empty();
+        }
+        return Optional.of(checkpoint);
+    }
+
+    public void save(Path file) throws IOException {
+        Path path = pathFor(file);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, offset + "," + rows + "," + fileSize);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void clear(Path file) throws IOException {
+        Files.deleteIfExists(pathFor(file));
+    }
+
+    private static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint");
+    }
+}
@@ -0,0 +1,41 @@
+package libraryassistant.jdbc;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Считает SQL-запросы каждого HTTP-запроса и пишет в лог запросы, превысившие library.query-count.budget.
+ * Запросы потоковой выгрузки, которые выполняются в отдельном потоке, не учитываются.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "library.query-count", name = "enabled", havingValue = "true")
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    @Value("${library.query-count.budget}")
+    private int budget;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryCounter counter = QueryCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            QueryCounter.stop();
+            if (counter.statements() > budget) {
+                log.warn("{} {}: {} SQL-запросов за {} мс при бюджете {}", request.getMethod(), request.getRequestURI(),
+                        counter.statements(), String.format("%.2f", counter.millis()), budget);
+            }
+        }
+    }
+}
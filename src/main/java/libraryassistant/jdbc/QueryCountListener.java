@@ -0,0 +1,27 @@
+package libraryassistant.jdbc;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+
+// JDBC-батч считается одним запросом: это одно обращение к базе
+class QueryCountListener implements QueryExecutionListener {
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        QueryCounter counter = QueryCounter.current();
+        if (counter != null) {
+            counter.beforeStatement();
+        }
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        QueryCounter counter = QueryCounter.current();
+        if (counter != null) {
+            counter.afterStatement();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package libraryassistant.jdbc;
+
+import java.util.Locale;
+
+/**
+ * Число SQL-запросов и время в базе для текущего потока: HTTP-запроса (QueryCountFilter) или участка кода в тесте.
+ * Запросы считает QueryCountListener прокси источника данных; пока счетчик не запущен, запросы не учитываются.
+ */
+public final class QueryCounter {
+    private static final ThreadLocal<QueryCounter> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long nanos;
+    private long statementStartedAt;
+
+    private QueryCounter() {
+    }
+
+    public static QueryCounter start() {
+        QueryCounter counter = new QueryCounter();
+        CURRENT.set(counter);
+        return counter;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    public static QueryCounter current() {
+        return CURRENT.get();
+    }
+
+    public int statements() {
+        return statements;
+    }
+
+    public double millis() {
+        return nanos / 1e6;
+    }
+
+    // значение заголовка Server-Timing, например: db;desc="3 statements";dur=1.25
+    public String serverTiming() {
+        return String.format(Locale.ROOT, "db;desc=\"%d statements\";dur=%.2f", statements, millis());
+    }
+
+    void beforeStatement() {
+        statementStartedAt = System.nanoTime();
+    }
+
+    void afterStatement() {
+        statements++;
+        nanos += System.nanoTime() - statementStartedAt;
+    }
+}
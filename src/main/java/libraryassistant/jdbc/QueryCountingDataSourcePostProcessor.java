@@ -0,0 +1,29 @@
+package libraryassistant.jdbc;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Оборачивает источник данных прокси, который сообщает о каждом запросе в QueryCounter текущего потока.
+ * unwrap прокси отдает исходный пул, поэтому метрики Hikari и COPY через PGConnection работают как раньше.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.query-count", name = "enabled", havingValue = "true")
+public class QueryCountingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+            return ProxyDataSourceBuilder.create(dataSource)
+                    .name(beanName)
+                    .listener(new QueryCountListener())
+                    .build();
+        }
+        return bean;
+    }
+}
@@ -6,8 +6,6 @@ import libraryassistant.dto.ReaderDTO;
 import libraryassistant.entities.Book;
 import libraryassistant.entities.BookEvent;
 import libraryassistant.entities.Reader;
-import libraryassistant.exeption.custom.BookNotFoundException;
-import libraryassistant.exeption.custom.ReaderNotFoundException;
 import libraryassistant.repository.BookRepository;
 import libraryassistant.repository.ReaderRepository;
 import lombok.RequiredArgsConstructor;
@@ -55,15 +53,14 @@ public class Mapper {
     }
 
 
+    // читатель и книга подставляются ссылками без SELECT, их существование проверяет внешний ключ при вставке
     public BookEvent toBookEvent(BookEventDTO bookEventDTO) {
         BookEvent bookEvent = new BookEvent();
         bookEvent.setId(bookEventDTO.getId());
         bookEvent.setEventDate(bookEventDTO.getEventDate());
         bookEvent.setEventType(bookEventDTO.getEventType());
-        bookEvent.setReader(readerRepository.findById(bookEventDTO.getReader().getId())
-                .orElseThrow(() -> new ReaderNotFoundException("Читатель с id " + bookEventDTO.getReader().getId() + " не найден")));
-        bookEvent.setBook(bookRepository.findById(bookEventDTO.getBook().getId())
-                .orElseThrow(() -> new BookNotFoundException("Книга с id " + bookEventDTO.getBook().getId() + " не найдена")));
+        bookEvent.setReader(readerRepository.getReferenceById(bookEventDTO.getReader().getId()));
+        bookEvent.setBook(bookRepository.getReferenceById(bookEventDTO.getBook().getId()));
         return bookEvent;
     }
 
@@ -76,4 +73,14 @@ public class Mapper {
         dto.setBook(new BookDTO(bookEvent.getBook().getId(), bookEvent.getBook().getTitle(), bookEvent.getBook().getAuthor()));
         return dto;
     }
+
+    public BookEventDTO toBookEventDTO(BookEvent bookEvent, ReaderDTO reader, BookDTO book) {
+        BookEventDTO dto = new BookEventDTO();
+        dto.setId(bookEvent.getId());
+        dto.setEventDate(bookEvent.getEventDate());
+        dto.setEventType(bookEvent.getEventType());
+        dto.setReader(reader);
+        dto.setBook(book);
+        return dto;
+    }
 }
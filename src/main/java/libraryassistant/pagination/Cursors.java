@@ -0,0 +1,98 @@
+package libraryassistant.pagination;
+
+import libraryassistant.dto.CursorPage;
+import libraryassistant.exeption.custom.InvalidCursorException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Курсоры для постраничной выдачи по ключу (keyset).
+ * Курсор - это закодированный ключ последней строки страницы, следующая страница начинается строго после него,
+ * поэтому стоимость любой страницы не зависит от ее номера.
+ */
+public final class Cursors {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String SEPARATOR = "|";
+
+    private Cursors() {
+    }
+
+    // запрашиваем на одну строку больше, чтобы понять, есть ли следующая страница
+    public static Pageable probe(int limit) {
+        return PageRequest.of(0, clamp(limit) + 1);
+    }
+
+    public static <E, D> CursorPage<D> page(List<E> rows, int limit, Function<E, D> mapper, Function<E, String> cursor) {
+        int size = clamp(limit);
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows.stream().map(mapper).toList(), null);
+        }
+        List<E> pageRows = rows.subList(0, size);
+        return new CursorPage<>(pageRows.stream().map(mapper).toList(), cursor.apply(pageRows.get(size - 1)));
+    }
+
+    public static HttpHeaders headers(CursorPage<?> page) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null) {
+            headers.set(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return headers;
+    }
+
+    public static String encodeId(UUID id) {
+        return encode(id.toString());
+    }
+
+    public static UUID decodeId(String cursor) {
+        try {
+            return UUID.fromString(decode(cursor));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    public static String encodeEvent(LocalDateTime eventDate, UUID id) {
+        return encode(eventDate + SEPARATOR + id);
+    }
+
+    public static EventCursor decodeEvent(String cursor) {
+        String value = decode(cursor);
+        int separator = value.indexOf(SEPARATOR);
+        try {
+            return new EventCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    UUID.fromString(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    private static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    public record EventCursor(LocalDateTime eventDate, UUID id) {
+    }
+}
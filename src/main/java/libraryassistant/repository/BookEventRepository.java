@@ -1,19 +1,103 @@
 package libraryassistant.repository;
 
+import jakarta.persistence.QueryHint;
+import libraryassistant.dto.BookEventDTO;
 import libraryassistant.entities.EventType;
 import libraryassistant.entities.BookEvent;
+import libraryassistant.repository.projection.IdCount;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface BookEventRepository extends JpaRepository<BookEvent, UUID> {
 
+    String EVENT_DTO = """
+            select new libraryassistant.dto.BookEventDTO(e.id, e.eventDate, e.eventType,
+                r.id, r.firstName, r.secondName, r.birthDate, b.id, b.title, b.author)
+            from BookEvent e join e.reader r join e.book b
+            """;
+
+    @EntityGraph(attributePaths = {"reader", "book"})
     List<BookEvent> findByEventDateBetweenAndEventType(LocalDateTime startDate, LocalDateTime endDate, EventType eventType);
 
+    @EntityGraph(attributePaths = {"reader", "book"})
     List<BookEvent> findByEventDateBetween(LocalDateTime startDate, LocalDateTime endDate);
 
     Optional<BookEvent> findFirstByBookIdOrderByEventDateDesc(UUID bookId);
+
+    @Query(EVENT_DTO + "order by e.eventDate, e.id")
+    List<BookEventDTO> findFirstPage(Pageable pageable);
+
+    // первое условие - диапазон по индексу (event_date, id) с отсечением секций, второе добирает строки с той же датой
+    @Query(EVENT_DTO + """
+            where e.eventDate >= :eventDate and (e.eventDate > :eventDate or e.id > :id)
+            order by e.eventDate, e.id
+            """)
+    List<BookEventDTO> findPageAfter(LocalDateTime eventDate, UUID id, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(EVENT_DTO + """
+            where e.eventDate between :startDate and :endDate
+            order by e.eventDate, e.id
+            """)
+    Stream<BookEventDTO> streamByEventDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(EVENT_DTO + """
+            where e.eventDate between :startDate and :endDate and e.eventType = :eventType
+            order by e.eventDate, e.id
+            """)
+    Stream<BookEventDTO> streamByEventDateBetweenAndEventType(LocalDateTime startDate, LocalDateTime endDate, EventType eventType);
+
+    @Query("""
+            select e.book.id as id, count(e) as total
+            from BookEvent e
+            where e.eventDate between :startDate and :endDate and e.eventType = :eventType
+            group by e.book.id
+            order by count(e) desc
+            """)
+    List<IdCount> countByBook(LocalDateTime startDate, LocalDateTime endDate, EventType eventType, Pageable pageable);
+
+    @Query("""
+            select e.reader.id as id, count(e) as total
+            from BookEvent e
+            where e.eventDate between :startDate and :endDate
+            group by e.reader.id
+            order by count(e) desc
+            """)
+    List<IdCount> countByReader(LocalDateTime startDate, LocalDateTime endDate, Pageable pageable);
+
+    // дата рождения читателя строго между bornAfter и bornBefore
+    @Query("""
+            select e.book.id as id, count(e) as total
+            from BookEvent e join e.reader r
+            where e.eventDate between :startDate and :endDate and e.eventType = :eventType
+              and r.birthDate > :bornAfter and r.birthDate < :bornBefore
+            group by e.book.id
+            order by count(e) desc
+            """)
+    List<IdCount> countByBookForReadersBornBetween(LocalDateTime startDate, LocalDateTime endDate, EventType eventType,
+                                                   LocalDate bornAfter, LocalDate bornBefore, Pageable pageable);
+
+    @Query("""
+            select r.id as id, count(e) as total
+            from BookEvent e join e.reader r
+            where e.eventDate between :startDate and :endDate
+              and r.birthDate > :bornAfter and r.birthDate < :bornBefore
+            group by r.id
+            order by count(e) desc
+            """)
+    List<IdCount> countByReaderBornBetween(LocalDateTime startDate, LocalDateTime endDate,
+                                           LocalDate bornAfter, LocalDate bornBefore, Pageable pageable);
 }
 
@@ -0,0 +1,50 @@
+package libraryassistant.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import libraryassistant.entities.BookLoanState;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface BookLoanStateRepository extends JpaRepository<BookLoanState, UUID> {
+
+    // событие без проверки (например, историческое) меняет состояние, только если оно не старее текущего
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "book_loan_state"))
+    @Query(value = """
+            insert into book_loan_state (book_id, reader_id, last_event_type, last_event_date)
+            values (:bookId, case when :eventType = 'BORROW' then cast(:readerId as uuid) end, :eventType, :eventDate)
+            on conflict (book_id) do update
+            set reader_id = excluded.reader_id,
+                last_event_type = excluded.last_event_type,
+                last_event_date = excluded.last_event_date
+            where book_loan_state.last_event_date is null or book_loan_state.last_event_date <= excluded.last_event_date
+            """, nativeQuery = true)
+    int applyIfNewer(UUID bookId, UUID readerId, String eventType, LocalDateTime eventDate);
+
+    // строки блокируются в порядке book_id, чтобы параллельные пачки не взаимоблокировались
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<BookLoanState> findByBookIdInOrderByBookId(Collection<UUID> bookIds);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "book_loan_state"))
+    @Query(value = """
+            insert into book_loan_state (book_id, reader_id, last_event_type, last_event_date)
+            select distinct on (e.book_id) e.book_id,
+                   case when e.event_type = 'BORROW' then e.reader_id end,
+                   e.event_type,
+                   e.event_date
+            from events e
+            order by e.book_id, e.event_date desc, e.id desc
+            """, nativeQuery = true)
+    int insertFromEventLog();
+}
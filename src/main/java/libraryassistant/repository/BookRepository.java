@@ -1,11 +1,27 @@
 package libraryassistant.repository;
 
+import libraryassistant.dto.BookDTO;
 import libraryassistant.entities.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface BookRepository extends JpaRepository<Book, UUID> {
     Optional<Book> findByTitle(String bookTitle);
+
+    @Query("select b.title from Book b where b.title in :titles")
+    List<String> findExistingTitles(Collection<String> titles);
+
+    // проекция в DTO: уже привязанный к сессии прокси книги не инициализируется
+    @Query("select new libraryassistant.dto.BookDTO(b.id, b.title, b.author) from Book b where b.id = :id")
+    Optional<BookDTO> findDtoById(UUID id);
+
+    List<Book> findAllByOrderByIdAsc(Pageable pageable);
+
+    List<Book> findByIdGreaterThanOrderByIdAsc(UUID id, Pageable pageable);
 }
@@ -0,0 +1,61 @@
+package libraryassistant.repository;
+
+import jakarta.persistence.QueryHint;
+import libraryassistant.entities.DailyBookStats;
+import libraryassistant.entities.DailyBookStatsId;
+import libraryassistant.repository.projection.IdCount;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface DailyBookStatsRepository extends JpaRepository<DailyBookStats, DailyBookStatsId> {
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_book_stats"))
+    @Query(value = """
+            insert into daily_book_stats (day, book_id, borrow_count)
+            values (:day, :bookId, :count)
+            on conflict (day, book_id) do update
+            set borrow_count = daily_book_stats.borrow_count + excluded.borrow_count
+            """, nativeQuery = true)
+    void increment(LocalDate day, UUID bookId, long count);
+
+    // полные дни [fromDay, toDay) берутся из сводки, неполные края [startDate, fromDay) и [toDay, endDate] - из events
+    @Query(value = """
+            select t.id as id, cast(sum(t.cnt) as bigint) as total
+            from (
+                select s.book_id as id, s.borrow_count as cnt
+                from daily_book_stats s
+                where s.day >= :fromDay and s.day < :toDay
+                union all
+                select e.book_id, 1
+                from events e
+                where e.event_type = 'BORROW'
+                  and ((e.event_date >= :startDate and e.event_date < :fromDate)
+                    or (e.event_date >= :toDate and e.event_date <= :endDate))
+            ) t
+            group by t.id
+            order by total desc
+            limit :limit
+            """, nativeQuery = true)
+    List<IdCount> countByBook(LocalDateTime startDate, LocalDate fromDay, LocalDateTime fromDate,
+                              LocalDate toDay, LocalDateTime toDate, LocalDateTime endDate, int limit);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_book_stats"))
+    @Query(value = """
+            insert into daily_book_stats (day, book_id, borrow_count)
+            select cast(e.event_date as date), e.book_id, count(*)
+            from events e
+            where e.event_type = 'BORROW'
+            group by cast(e.event_date as date), e.book_id
+            """, nativeQuery = true)
+    int insertFromEventLog();
+}
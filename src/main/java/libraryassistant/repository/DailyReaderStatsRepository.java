@@ -0,0 +1,59 @@
+package libraryassistant.repository;
+
+import jakarta.persistence.QueryHint;
+import libraryassistant.entities.DailyReaderStats;
+import libraryassistant.entities.DailyReaderStatsId;
+import libraryassistant.repository.projection.IdCount;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface DailyReaderStatsRepository extends JpaRepository<DailyReaderStats, DailyReaderStatsId> {
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_reader_stats"))
+    @Query(value = """
+            insert into daily_reader_stats (day, reader_id, event_count)
+            values (:day, :readerId, :count)
+            on conflict (day, reader_id) do update
+            set event_count = daily_reader_stats.event_count + excluded.event_count
+            """, nativeQuery = true)
+    void increment(LocalDate day, UUID readerId, long count);
+
+    // полные дни [fromDay, toDay) берутся из сводки, неполные края [startDate, fromDay) и [toDay, endDate] - из events
+    @Query(value = """
+            select t.id as id, cast(sum(t.cnt) as bigint) as total
+            from (
+                select s.reader_id as id, s.event_count as cnt
+                from daily_reader_stats s
+                where s.day >= :fromDay and s.day < :toDay
+                union all
+                select e.reader_id, 1
+                from events e
+                where (e.event_date >= :startDate and e.event_date < :fromDate)
+                   or (e.event_date >= :toDate and e.event_date <= :endDate)
+            ) t
+            group by t.id
+            order by total desc
+            limit :limit
+            """, nativeQuery = true)
+    List<IdCount> countByReader(LocalDateTime startDate, LocalDate fromDay, LocalDateTime fromDate,
+                                LocalDate toDay, LocalDateTime toDate, LocalDateTime endDate, int limit);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_reader_stats"))
+    @Query(value = """
+            insert into daily_reader_stats (day, reader_id, event_count)
+            select cast(e.event_date as date), e.reader_id, count(*)
+            from events e
+            group by cast(e.event_date as date), e.reader_id
+            """, nativeQuery = true)
+    int insertFromEventLog();
+}
@@ -1,13 +1,30 @@
 package libraryassistant.repository;
 
+import libraryassistant.dto.ReaderDTO;
 import libraryassistant.entities.Reader;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 public interface ReaderRepository extends JpaRepository<Reader, UUID> {
     Optional<Reader> findByFirstNameAndSecondName(String firstName, String secondName);
 
+    // проекция в DTO: уже привязанный к сессии прокси читателя не инициализируется
+    @Query("select new libraryassistant.dto.ReaderDTO(r.id, r.firstName, r.secondName, r.birthDate) from Reader r where r.id = :id")
+    Optional<ReaderDTO> findDtoById(UUID id);
 
+    List<Reader> findAllByOrderByIdAsc(Pageable pageable);
+
+    List<Reader> findByIdGreaterThanOrderByIdAsc(UUID id, Pageable pageable);
+
+    // границы исключаются, как в countByBookForReadersBornBetween
+    @Query("select r.id from Reader r where r.id in :ids and r.birthDate > :bornAfter and r.birthDate < :bornBefore")
+    Set<UUID> findIdsBornBetween(Collection<UUID> ids, LocalDate bornAfter, LocalDate bornBefore);
 }
@@ -0,0 +1,9 @@
+package libraryassistant.repository.projection;
+
+import java.util.UUID;
+
+public interface IdCount {
+    UUID getId();
+
+    long getTotal();
+}
@@ -1,95 +1,368 @@
 package libraryassistant.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
+import libraryassistant.cache.LookupCache;
 import libraryassistant.dto.BookDTO;
 import libraryassistant.dto.BookEventDTO;
+import libraryassistant.dto.BulkItemResultDTO;
+import libraryassistant.dto.BulkItemStatus;
+import libraryassistant.dto.CursorPage;
+import libraryassistant.dto.LeaderboardEntryDTO;
+import libraryassistant.dto.LeaderboardWindow;
 import libraryassistant.dto.ReaderDTO;
+import libraryassistant.engine.AnalyticsEngine;
+import libraryassistant.engine.BookEventsSavedEvent;
+import libraryassistant.engine.LiveLeaderboards;
+import libraryassistant.engine.LoanStateEngine;
 import libraryassistant.entities.Book;
 import libraryassistant.entities.BookEvent;
+import libraryassistant.entities.BookLoanState;
 import libraryassistant.entities.EventType;
 import libraryassistant.entities.Reader;
 import libraryassistant.exeption.custom.BookAlreadyBorrowedException;
+import libraryassistant.exeption.custom.BookNotFoundException;
+import libraryassistant.exeption.custom.InvalidEventException;
+import libraryassistant.exeption.custom.ReaderNotFoundException;
 import libraryassistant.mapper.Mapper;
+import libraryassistant.pagination.Cursors;
 import libraryassistant.repository.BookEventRepository;
 import libraryassistant.repository.BookRepository;
 import libraryassistant.repository.ReaderRepository;
+import libraryassistant.repository.projection.IdCount;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "library.service", histogram = true)
 public class BookEventService {
+    // границы периода выгрузки, если дата не указана
+    private static final LocalDateTime EXPORT_MIN_DATE = LocalDateTime.of(1, 1, 1, 0, 0);
+    private static final LocalDateTime EXPORT_MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    // границы фильтра по дате рождения читателя, если одна из них не указана
+    private static final LocalDate BIRTH_MIN_DATE = LocalDate.of(1, 1, 1);
+    private static final LocalDate BIRTH_MAX_DATE = LocalDate.of(9999, 12, 31);
 
     private final BookEventRepository bookEventRepository;
     private final ReaderRepository readerRepository;
     private final BookRepository bookRepository;
+    private final BookLoanStateService bookLoanStateService;
+    private final DailyStatsService dailyStatsService;
+    private final Optional<LoanStateEngine> loanStateEngine;
+    private final Optional<AnalyticsEngine> analyticsEngine;
+    private final Optional<LiveLeaderboards> liveLeaderboards;
+    private final ApplicationEventPublisher eventPublisher;
     private final Mapper mapper;
+    private final ObjectMapper objectMapper;
+    private final LookupCache lookupCache;
 
     public boolean isBookBorrowed(UUID bookId) {
-        Optional<BookEvent> lastEvent = bookEventRepository.findFirstByBookIdOrderByEventDateDesc(bookId);
-
-        return lastEvent.isPresent() && lastEvent.get().getEventType() == EventType.BORROW;
+        return loanStateEngine.map(engine -> engine.isBookBorrowed(bookId))
+                .orElseGet(() -> bookLoanStateService.isBookBorrowed(bookId));
     }
 
+    @Transactional
     public BookEventDTO createBookEvent(String firstName, String secondName, String bookTitle, EventType eventType) {
-        Reader reader = readerRepository.findByFirstNameAndSecondName(firstName, secondName)
+        ReaderDTO readerDTO = lookupCache.findReaderByName(firstName, secondName)
                 .orElseThrow(() -> new EntityNotFoundException("Данный читатель не найден: " + firstName + " " + secondName));
-        Book book = bookRepository.findByTitle(bookTitle)
+        BookDTO bookDTO = lookupCache.findBookByTitle(bookTitle)
                 .orElseThrow(() -> new EntityNotFoundException("Данная книга не найдена: " + bookTitle));
+        // ссылки без загрузки сущностей, ответ собирается из закэшированных DTO
+        Reader reader = readerRepository.getReferenceById(readerDTO.getId());
+        Book book = bookRepository.getReferenceById(bookDTO.getId());
+
+        // дата события - та, с которой его приняло состояние книги, она не раньше предыдущего события по книге
+        LocalDateTime eventDate = LocalDateTime.now();
 
-        if (eventType == EventType.BORROW && isBookBorrowed(book.getId())) {
-            throw new BookAlreadyBorrowedException("Книга уже взята и не была возвращена");
+        if (eventType == EventType.BORROW) {
+            eventDate = tryBorrow(book.getId(), reader.getId(), eventDate)
+                    .orElseThrow(() -> new BookAlreadyBorrowedException("Книга уже взята и не была возвращена"));
         }
 
-        if (eventType == EventType.RETURN && !isBookBorrowed(book.getId())) {
-            throw new BookAlreadyBorrowedException("Книга не была взята ранее, возврат невозможен");
+        if (eventType == EventType.RETURN) {
+            eventDate = tryReturn(book.getId(), reader.getId(), eventDate)
+                    .orElseThrow(() -> new BookAlreadyBorrowedException("Книга не была взята ранее, возврат невозможен"));
         }
 
         BookEvent bookEvent = new BookEvent();
         bookEvent.setReader(reader);
         bookEvent.setBook(book);
-        bookEvent.setEventDate(LocalDateTime.now());
+        bookEvent.setEventDate(eventDate);
         bookEvent.setEventType(eventType);
 
-        return mapper.toBookEventDTO(bookEventRepository.save(bookEvent));
+        BookEvent savedEvent = bookEventRepository.save(bookEvent);
+        dailyStatsService.record(savedEvent);
+        eventPublisher.publishEvent(new BookEventsSavedEvent(List.of(savedRow(savedEvent, readerDTO.getBirthDate()))));
+        return mapper.toBookEventDTO(savedEvent, readerDTO, bookDTO);
     }
 
+    // вставка события - единственное обращение к БД до записи состояния, отсутствие читателя или книги
+    // обнаруживается по нарушению внешнего ключа. Прокси читателя и книги не инициализируются: данные для ответа
+    // и дата рождения для аналитики берутся из кэша поиска по id
+    @Transactional
     public BookEventDTO createEvent(BookEventDTO eventDTO) {
+        if (eventDTO.getEventType() == null) {
+            throw new InvalidEventException("Не указан тип события");
+        }
+        if (eventDTO.getEventDate() == null) {
+            throw new InvalidEventException("Не указана дата события");
+        }
         BookEvent event = mapper.toBookEvent(eventDTO);
-        BookEvent savedEvent = bookEventRepository.save(event);
-        return mapper.toBookEventDTO(savedEvent);
+        BookEvent savedEvent;
+        try {
+            savedEvent = bookEventRepository.saveAndFlush(event);
+        } catch (DataIntegrityViolationException e) {
+            throw missingReference(e, eventDTO);
+        }
+        bookLoanStateService.apply(savedEvent);
+        loanStateEngine.ifPresent(engine -> engine.apply(savedEvent));
+        dailyStatsService.record(savedEvent);
+        ReaderDTO readerDTO = lookupCache.findReaderById(eventDTO.getReader().getId())
+                .orElseThrow(() -> new ReaderNotFoundException("Читатель с id " + eventDTO.getReader().getId() + " не найден"));
+        BookDTO bookDTO = lookupCache.findBookById(eventDTO.getBook().getId())
+                .orElseThrow(() -> new BookNotFoundException("Книга с id " + eventDTO.getBook().getId() + " не найдена"));
+        eventPublisher.publishEvent(new BookEventsSavedEvent(List.of(savedRow(savedEvent, readerDTO.getBirthDate()))));
+        return mapper.toBookEventDTO(savedEvent, readerDTO, bookDTO);
+    }
+
+    // читатели, книги и состояние книг читаются IN-запросами, пачка проверяется в памяти в порядке дат событий,
+    // принятые события вставляются одним JDBC-батчем
+    @Transactional
+    public List<BulkItemResultDTO<BookEventDTO>> createEvents(List<BookEventDTO> eventDTOs) {
+        Map<UUID, Reader> readers = readerRepository.findAllById(eventDTOs.stream().filter(Objects::nonNull)
+                        .map(BookEventDTO::getReader).filter(Objects::nonNull).map(ReaderDTO::getId).filter(Objects::nonNull)
+                        .collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Reader::getId, Function.identity()));
+        Map<UUID, Book> books = bookRepository.findAllById(eventDTOs.stream().filter(Objects::nonNull)
+                        .map(BookEventDTO::getBook).filter(Objects::nonNull).map(BookDTO::getId).filter(Objects::nonNull)
+                        .collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Book::getId, Function.identity()));
+        Map<UUID, BookLoanState> states = bookLoanStateService.lockStates(books.keySet());
+
+        List<BulkItemResultDTO<BookEventDTO>> results = new ArrayList<>(Collections.nCopies(eventDTOs.size(), null));
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        List<BookEvent> accepted = new ArrayList<>();
+        List<Integer> order = IntStream.range(0, eventDTOs.size()).boxed()
+                .sorted(Comparator.comparing((Integer i) -> eventDTOs.get(i) == null ? null : eventDTOs.get(i).getEventDate(),
+                        Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder())))
+                .toList();
+        for (int index : order) {
+            BookEventDTO eventDTO = eventDTOs.get(index);
+            if (eventDTO == null) {
+                results.set(index, new BulkItemResultDTO<>(index, BulkItemStatus.REJECTED, null, "Пустой элемент пачки"));
+                continue;
+            }
+            Reader reader = eventDTO.getReader() == null ? null : readers.get(eventDTO.getReader().getId());
+            Book book = eventDTO.getBook() == null ? null : books.get(eventDTO.getBook().getId());
+            String rejection = validate(eventDTO, reader, book, book == null ? null : states.get(book.getId()));
+            if (rejection != null) {
+                results.set(index, new BulkItemResultDTO<>(index, BulkItemStatus.REJECTED, eventDTO, rejection));
+                continue;
+            }
+            BookLoanState state = states.get(book.getId());
+            state.setReaderId(eventDTO.getEventType() == EventType.BORROW ? reader.getId() : null);
+            state.setLastEventType(eventDTO.getEventType());
+            state.setLastEventDate(eventDTO.getEventDate());
+
+            BookEvent bookEvent = new BookEvent();
+            bookEvent.setReader(reader);
+            bookEvent.setBook(book);
+            bookEvent.setEventDate(eventDTO.getEventDate());
+            bookEvent.setEventType(eventDTO.getEventType());
+            acceptedIndexes.add(index);
+            accepted.add(bookEvent);
+        }
+
+        List<BookEvent> saved = bookEventRepository.saveAll(accepted);
+        dailyStatsService.recordAll(saved);
+        eventPublisher.publishEvent(new BookEventsSavedEvent(saved.stream()
+                .map(event -> savedRow(event, event.getReader().getBirthDate()))
+                .toList()));
+        for (int i = 0; i < saved.size(); i++) {
+            BookEvent savedEvent = saved.get(i);
+            loanStateEngine.ifPresent(engine -> engine.apply(savedEvent));
+            int index = acceptedIndexes.get(i);
+            results.set(index, new BulkItemResultDTO<>(index, BulkItemStatus.CREATED, mapper.toBookEventDTO(savedEvent), null));
+        }
+        return results;
     }
 
-    public List<BookEventDTO> findAllEvents() {
-        return bookEventRepository.findAll().stream().map(mapper::toBookEventDTO).toList();
+    public int rebuildLoanState() {
+        int rebuilt = bookLoanStateService.rebuild();
+        loanStateEngine.ifPresent(LoanStateEngine::reload);
+        return rebuilt;
     }
 
-    public BookDTO findMostPopularBook(LocalDateTime startDate, LocalDateTime endDate) {
-        List<BookEvent> bookEvents = bookEventRepository.findByEventDateBetweenAndEventType(startDate, endDate, EventType.BORROW);
-        return bookEvents.stream()
-                .collect(Collectors.groupingBy(BookEvent::getBook, Collectors.counting()))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .map(book -> new BookDTO(book.getId(), book.getTitle(), book.getAuthor()))
+    public int backfillDailyStats() {
+        return dailyStatsService.backfill();
+    }
+
+    // события, читатели и книги читаются одной проекцией в DTO, без догрузки связей по строкам
+    public CursorPage<BookEventDTO> findAllEvents(String after, int limit) {
+        List<BookEventDTO> events;
+        if (after == null) {
+            events = bookEventRepository.findFirstPage(Cursors.probe(limit));
+        } else {
+            Cursors.EventCursor cursor = Cursors.decodeEvent(after);
+            events = bookEventRepository.findPageAfter(cursor.eventDate(), cursor.id(), Cursors.probe(limit));
+        }
+        return Cursors.page(events, limit, Function.identity(),
+                event -> Cursors.encodeEvent(event.getEventDate(), event.getId()));
+    }
+
+    // события пишутся по одному на строку прямо из курсора проекции в DTO, сущности в контекст персистентности
+    // не попадают, поэтому потребление памяти не зависит от размера таблицы
+    @Transactional(readOnly = true)
+    public void exportEvents(LocalDateTime startDate, LocalDateTime endDate, EventType eventType, OutputStream out) throws IOException {
+        LocalDateTime from = startDate == null ? EXPORT_MIN_DATE : startDate;
+        LocalDateTime to = endDate == null ? EXPORT_MAX_DATE : endDate;
+        ObjectWriter writer = objectMapper.writerFor(BookEventDTO.class);
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        try (Stream<BookEventDTO> events = eventType == null
+                ? bookEventRepository.streamByEventDateBetween(from, to)
+                : bookEventRepository.streamByEventDateBetweenAndEventType(from, to, eventType)) {
+            Iterator<BookEventDTO> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                buffered.write(writer.writeValueAsBytes(iterator.next()));
+                buffered.write('\n');
+            }
+        }
+        buffered.flush();
+    }
+
+    // без фильтра по читателям - по дневным сводкам, с фильтром - по events; архивные события учитываются в обоих
+    // случаях; при включенном движке - в памяти
+    public BookDTO findMostPopularBook(LocalDateTime startDate, LocalDateTime endDate, LocalDate readerBornAfter, LocalDate readerBornBefore) {
+        Optional<UUID> bookId;
+        if (analyticsEngine.isPresent()) {
+            bookId = analyticsEngine.get().findMostPopularBookId(startDate, endDate, readerBornAfter, readerBornBefore);
+        } else if (readerBornAfter == null && readerBornBefore == null) {
+            bookId = dailyStatsService.findMostPopularBookId(startDate, endDate);
+        } else {
+            bookId = dailyStatsService.findMostPopularBookId(startDate, endDate,
+                    readerBornAfter == null ? BIRTH_MIN_DATE : readerBornAfter,
+                    readerBornBefore == null ? BIRTH_MAX_DATE : readerBornBefore);
+        }
+        return bookId.flatMap(bookRepository::findById)
+                .map(mapper::toBookDTO)
                 .orElse(null);
     }
 
-    public ReaderDTO findMostActiveReader(LocalDateTime startDate, LocalDateTime endDate) {
-        List<BookEvent> bookEvents = bookEventRepository.findByEventDateBetween(startDate, endDate);
-        return bookEvents.stream()
-                .collect(Collectors.groupingBy(BookEvent::getReader, Collectors.counting()))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .map(reader -> new ReaderDTO(reader.getId(), reader.getFirstName(), reader.getSecondName(), reader.getBirthDate()))
+    public ReaderDTO findMostActiveReader(LocalDateTime startDate, LocalDateTime endDate, LocalDate readerBornAfter, LocalDate readerBornBefore) {
+        Optional<UUID> readerId;
+        if (analyticsEngine.isPresent()) {
+            readerId = analyticsEngine.get().findMostActiveReaderId(startDate, endDate, readerBornAfter, readerBornBefore);
+        } else if (readerBornAfter == null && readerBornBefore == null) {
+            readerId = dailyStatsService.findMostActiveReaderId(startDate, endDate);
+        } else {
+            readerId = dailyStatsService.findMostActiveReaderId(startDate, endDate,
+                    readerBornAfter == null ? BIRTH_MIN_DATE : readerBornAfter,
+                    readerBornBefore == null ? BIRTH_MAX_DATE : readerBornBefore);
+        }
+        return readerId.flatMap(readerRepository::findById)
+                .map(mapper::toReaderDTO)
                 .orElse(null);
     }
+
+    // без живых рейтингов считается по сводкам за то же окно
+    public List<LeaderboardEntryDTO<BookDTO>> findBookLeaderboard(LeaderboardWindow window, int limit) {
+        List<IdCount> counts = liveLeaderboards.map(leaderboards -> leaderboards.topBooks(window, limit))
+                .orElseGet(() -> dailyStatsService.countBooks(LocalDateTime.now().minus(window.length()), LocalDateTime.now(), limit));
+        return leaderboard(counts, id -> bookRepository.findById(id).map(mapper::toBookDTO));
+    }
+
+    public List<LeaderboardEntryDTO<ReaderDTO>> findReaderLeaderboard(LeaderboardWindow window, int limit) {
+        List<IdCount> counts = liveLeaderboards.map(leaderboards -> leaderboards.topReaders(window, limit))
+                .orElseGet(() -> dailyStatsService.countReaders(LocalDateTime.now().minus(window.length()), LocalDateTime.now(), limit));
+        return leaderboard(counts, id -> readerRepository.findById(id).map(mapper::toReaderDTO));
+    }
+
+    // книги и читатели по id берутся из кэша второго уровня, удаленные пропускаются
+    private <T> List<LeaderboardEntryDTO<T>> leaderboard(List<IdCount> counts, Function<UUID, Optional<T>> loader) {
+        List<LeaderboardEntryDTO<T>> entries = new ArrayList<>(counts.size());
+        for (IdCount count : counts) {
+            loader.apply(count.getId())
+                    .ifPresent(item -> entries.add(new LeaderboardEntryDTO<>(entries.size() + 1, item, count.getTotal())));
+        }
+        return entries;
+    }
+
+    private BookEventsSavedEvent.Row savedRow(BookEvent event, LocalDate readerBirthDate) {
+        return new BookEventsSavedEvent.Row(event.getBook().getId(), event.getReader().getId(), readerBirthDate,
+                event.getEventDate(), event.getEventType());
+    }
+
+    private String validate(BookEventDTO eventDTO, Reader reader, Book book, BookLoanState state) {
+        if (eventDTO.getEventDate() == null || eventDTO.getEventType() == null) {
+            return "Не указаны дата или тип события";
+        }
+        if (reader == null) {
+            return "Читатель не найден";
+        }
+        if (book == null) {
+            return "Книга не найдена";
+        }
+        if (state.getLastEventDate() != null && eventDTO.getEventDate().isBefore(state.getLastEventDate())) {
+            return "Событие раньше последнего события по этой книге";
+        }
+        boolean borrowed = state.getLastEventType() == EventType.BORROW;
+        if (eventDTO.getEventType() == EventType.BORROW && borrowed) {
+            return "Книга уже взята и не была возвращена";
+        }
+        if (eventDTO.getEventType() == EventType.RETURN && !borrowed) {
+            return "Книга не была взята ранее, возврат невозможен";
+        }
+        return null;
+    }
+
+    private RuntimeException missingReference(DataIntegrityViolationException e, BookEventDTO eventDTO) {
+        String constraint = e.getCause() instanceof ConstraintViolationException violation ? violation.getConstraintName() : null;
+        if (BookEvent.READER_FK.equalsIgnoreCase(constraint)) {
+            return new ReaderNotFoundException("Читатель с id " + eventDTO.getReader().getId() + " не найден");
+        }
+        if (BookEvent.BOOK_FK.equalsIgnoreCase(constraint)) {
+            return new BookNotFoundException("Книга с id " + eventDTO.getBook().getId() + " не найдена");
+        }
+        return e;
+    }
+
+    // сначала CAS в памяти (если движок включен), затем атомарная запись в book_loan_state;
+    // движок получает дату, с которой запись приняла база
+    private Optional<LocalDateTime> tryBorrow(UUID bookId, UUID readerId, LocalDateTime eventDate) {
+        Function<LocalDateTime, Optional<LocalDateTime>> store = date -> bookLoanStateService.tryBorrow(bookId, readerId, date);
+        return loanStateEngine.map(engine -> engine.tryBorrow(bookId, readerId, eventDate, store))
+                .orElseGet(() -> store.apply(eventDate));
+    }
+
+    private Optional<LocalDateTime> tryReturn(UUID bookId, UUID readerId, LocalDateTime eventDate) {
+        Function<LocalDateTime, Optional<LocalDateTime>> store = date -> bookLoanStateService.tryReturn(bookId, date);
+        return loanStateEngine.map(engine -> engine.tryReturn(bookId, readerId, eventDate, store))
+                .orElseGet(() -> store.apply(eventDate));
+    }
 }
@@ -0,0 +1,116 @@
+package libraryassistant.service;
+
+import libraryassistant.archive.EventArchive;
+import libraryassistant.entities.BookEvent;
+import libraryassistant.entities.BookLoanState;
+import libraryassistant.entities.EventType;
+import libraryassistant.repository.BookLoanStateRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class BookLoanStateService {
+    private final BookLoanStateRepository bookLoanStateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Optional<EventArchive> eventArchive;
+
+    public boolean isBookBorrowed(UUID bookId) {
+        return bookLoanStateRepository.findById(bookId)
+                .map(state -> state.getLastEventType() == EventType.BORROW)
+                .orElse(false);
+    }
+
+    // выдача проходит только если книга сейчас не выдана, проверка и запись атомарны; возвращает дату,
+    // с которой событие нужно записать: время берется до блокировки строки, и запрос, дождавшийся ее,
+    // иначе записал бы событие раньше уже зафиксированного, поэтому дата сдвигается за предыдущее событие
+    @Transactional
+    public Optional<LocalDateTime> tryBorrow(UUID bookId, UUID readerId, LocalDateTime eventDate) {
+        return jdbcTemplate.query("""
+                        insert into book_loan_state (book_id, reader_id, last_event_type, last_event_date)
+                        values (?, ?, 'BORROW', ?)
+                        on conflict (book_id) do update
+                        set reader_id = excluded.reader_id,
+                            last_event_type = excluded.last_event_type,
+                            last_event_date = greatest(excluded.last_event_date, book_loan_state.last_event_date + interval '1 microsecond')
+                        where book_loan_state.last_event_type is distinct from 'BORROW'
+                        returning last_event_date""",
+                (ResultSetExtractor<Optional<LocalDateTime>>) BookLoanStateService::recordedDate, bookId, readerId, eventDate);
+    }
+
+    @Transactional
+    public Optional<LocalDateTime> tryReturn(UUID bookId, LocalDateTime eventDate) {
+        return jdbcTemplate.query("""
+                        update book_loan_state
+                        set reader_id = null,
+                            last_event_type = 'RETURN',
+                            last_event_date = greatest(cast(? as timestamp), last_event_date + interval '1 microsecond')
+                        where book_id = ? and last_event_type = 'BORROW'
+                        returning last_event_date""",
+                (ResultSetExtractor<Optional<LocalDateTime>>) BookLoanStateService::recordedDate, eventDate, bookId);
+    }
+
+    @Transactional
+    public void apply(BookEvent event) {
+        bookLoanStateRepository.applyIfNewer(event.getBook().getId(), event.getReader().getId(),
+                event.getEventType().name(), event.getEventDate());
+    }
+
+    // для книг без состояния сначала создаются пустые строки, чтобы заблокировать все затронутые книги одним запросом;
+    // изменения возвращенных сущностей записываются при flush JDBC-батчем
+    @Transactional
+    public Map<UUID, BookLoanState> lockStates(Collection<UUID> bookIds) {
+        if (bookIds.isEmpty()) {
+            return Map.of();
+        }
+        jdbcTemplate.batchUpdate("insert into book_loan_state (book_id) values (?) on conflict do nothing",
+                bookIds.stream().sorted().map(bookId -> new Object[]{bookId}).toList());
+        return bookLoanStateRepository.findByBookIdInOrderByBookId(bookIds).stream()
+                .collect(Collectors.toMap(BookLoanState::getBookId, Function.identity()));
+    }
+
+    // перенесенных в архив событий в events уже нет: по книгам, чьи события целиком в архиве, состояние берется
+    // из последнего архивного события, при равной дате событие из базы важнее
+    @Transactional
+    public int rebuild() {
+        bookLoanStateRepository.deleteAllInBatch();
+        int rows = bookLoanStateRepository.insertFromEventLog();
+        if (eventArchive.isPresent()) {
+            List<Object[]> archived = eventArchive.get().latestEventPerBook().stream()
+                    .sorted(Comparator.comparing(EventArchive.LatestEvent::bookId))
+                    .map(event -> new Object[]{event.bookId(), event.eventType() == EventType.BORROW ? event.readerId() : null,
+                            event.eventType().name(), event.eventDate()})
+                    .toList();
+            int[] counts = jdbcTemplate.batchUpdate("""
+                    insert into book_loan_state (book_id, reader_id, last_event_type, last_event_date)
+                    values (?, ?, ?, ?)
+                    on conflict (book_id) do update
+                    set reader_id = excluded.reader_id,
+                        last_event_type = excluded.last_event_type,
+                        last_event_date = excluded.last_event_date
+                    where book_loan_state.last_event_date < excluded.last_event_date""", archived);
+            rows += Arrays.stream(counts).filter(count -> count > 0).sum();
+        }
+        return rows;
+    }
+
+    private static Optional<LocalDateTime> recordedDate(ResultSet rs) throws SQLException {
+        return rs.next() ? Optional.of(rs.getObject(1, LocalDateTime.class)) : Optional.empty();
+    }
+}
@@ -1,25 +1,44 @@
 package libraryassistant.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import libraryassistant.cache.LookupCache;
 import libraryassistant.dto.BookDTO;
+import libraryassistant.dto.BulkItemResultDTO;
+import libraryassistant.dto.BulkItemStatus;
+import libraryassistant.dto.CursorPage;
 import libraryassistant.entities.Book;
 import libraryassistant.exeption.custom.BookAlreadyExistException;
 import libraryassistant.exeption.custom.BookNotFoundException;
 import libraryassistant.mapper.Mapper;
+import libraryassistant.pagination.Cursors;
 import libraryassistant.repository.BookRepository;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "library.service", histogram = true)
 public class BookService {
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     private final BookRepository bookRepository;
     private final Mapper mapper;
+    private final EntityManager entityManager;
+    private final LookupCache lookupCache;
 
     public BookDTO createBook(BookDTO bookDTO) {
-        if (bookRepository.findByTitle(bookDTO.getTitle()).isPresent()) {
+        if (lookupCache.findBookByTitle(bookDTO.getTitle()).isPresent()) {
             throw new BookAlreadyExistException("Такая книга уже существует");
         }
         Book book = mapper.toBook(bookDTO);
@@ -28,6 +47,43 @@ public class BookService {
         return mapper.toBookDTO(bookRepository.save(book));
     }
 
+    // дубликаты проверяются одним запросом на пачку, вставка идет JDBC-батчами (hibernate.jdbc.batch_size)
+    @Transactional
+    public List<BulkItemResultDTO<BookDTO>> createBooks(List<BookDTO> bookDTOs) {
+        List<BulkItemResultDTO<BookDTO>> results = new ArrayList<>(Collections.nCopies(bookDTOs.size(), null));
+        Set<String> seenTitles = new HashSet<>();
+        for (int from = 0; from < bookDTOs.size(); from += BULK_CHUNK_SIZE) {
+            List<BookDTO> chunk = bookDTOs.subList(from, Math.min(from + BULK_CHUNK_SIZE, bookDTOs.size()));
+            seenTitles.addAll(bookRepository.findExistingTitles(chunk.stream().filter(Objects::nonNull).map(BookDTO::getTitle).toList()));
+
+            List<Integer> indexes = new ArrayList<>();
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                BookDTO bookDTO = chunk.get(i);
+                if (bookDTO == null) {
+                    results.set(from + i, new BulkItemResultDTO<>(from + i, BulkItemStatus.REJECTED, null, "Пустой элемент пачки"));
+                    continue;
+                }
+                if (!seenTitles.add(bookDTO.getTitle())) {
+                    results.set(from + i, new BulkItemResultDTO<>(from + i, BulkItemStatus.DUPLICATE, bookDTO, "Такая книга уже существует"));
+                    continue;
+                }
+                Book book = mapper.toBook(bookDTO);
+                book.setId(null);
+                indexes.add(from + i);
+                books.add(book);
+            }
+
+            List<Book> saved = bookRepository.saveAll(books);
+            for (int i = 0; i < saved.size(); i++) {
+                results.set(indexes.get(i), new BulkItemResultDTO<>(indexes.get(i), BulkItemStatus.CREATED, mapper.toBookDTO(saved.get(i)), null));
+            }
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return results;
+    }
+
     public BookDTO findBookById(UUID id) {
         return mapper.toBookDTO(bookRepository.findById(id)
                 .orElseThrow(() -> new BookNotFoundException("Книга с id " + id + " не найдена")));
@@ -36,20 +92,30 @@ public class BookService {
 
     public BookDTO updateBook(UUID id, BookDTO updatedBookDTO) {
         return bookRepository.findById(id).map(book -> {
+            String oldTitle = book.getTitle();
+            lookupCache.evictBook(id, oldTitle);
             book.setTitle(updatedBookDTO.getTitle());
             book.setAuthor(updatedBookDTO.getAuthor());
-            return mapper.toBookDTO(bookRepository.save(book));
+            BookDTO saved = mapper.toBookDTO(bookRepository.save(book));
+            // save уже зафиксирован; поиск по старому названию, прошедший между первой очисткой и фиксацией,
+            // мог снова положить в кэш строку до изменения
+            lookupCache.evictBook(id, oldTitle);
+            lookupCache.evictBook(id, saved.getTitle());
+            return saved;
         }).orElseThrow(() -> new BookNotFoundException("Книга с id " + id + " не найдена"));
     }
 
     public void deleteBookById(UUID id) {
-        if (!bookRepository.existsById(id)) {
-            throw new BookNotFoundException("Книга с id " + id + " не найдена");
-        }
+        Book book = bookRepository.findById(id)
+                .orElseThrow(() -> new BookNotFoundException("Книга с id " + id + " не найдена"));
         bookRepository.deleteById(id);
+        lookupCache.evictBook(id, book.getTitle());
     }
 
-    public List<BookDTO> findAllBooks() {
-        return bookRepository.findAll().stream().map(mapper::toBookDTO).toList();
+    public CursorPage<BookDTO> findAllBooks(String after, int limit) {
+        List<Book> books = after == null
+                ? bookRepository.findAllByOrderByIdAsc(Cursors.probe(limit))
+                : bookRepository.findByIdGreaterThanOrderByIdAsc(Cursors.decodeId(after), Cursors.probe(limit));
+        return Cursors.page(books, limit, mapper::toBookDTO, book -> Cursors.encodeId(book.getId()));
     }
 }
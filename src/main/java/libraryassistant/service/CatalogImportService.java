@@ -0,0 +1,179 @@
+package libraryassistant.service;
+
+import libraryassistant.dto.ImportReportDTO;
+import libraryassistant.exeption.custom.ImportFileException;
+import libraryassistant.importer.CatalogTable;
+import libraryassistant.importer.CsvRowReader;
+import libraryassistant.importer.ImportCheckpoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Импорт каталога из локального CSV-файла пачками фиксированного размера.
+ * После каждой зафиксированной пачки сохраняется точка продолжения, поэтому прерванный импорт
+ * продолжается с последней пачки, а память не зависит от размера файла.
+ * Если драйвер поддерживает COPY (PostgreSQL), строки файла передаются в базу без разбора на поля.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogImportService {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, ImportReportDTO> imports = new ConcurrentHashMap<>();
+    private final Set<Path> running = ConcurrentHashMap.newKeySet();
+
+    @Value("${library.import.dir}")
+    private String importDir;
+
+    @Value("${library.import.batch-size}")
+    private int batchSize;
+
+    @Value("${library.import.copy-enabled}")
+    private boolean copyEnabled;
+
+    public ImportReportDTO importFile(CatalogTable table, String fileName, boolean header) {
+        Path file = resolve(fileName);
+        if (!running.add(file)) {
+            throw new ImportFileException("Импорт файла " + fileName + " уже выполняется");
+        }
+        ImportReportDTO report = new ImportReportDTO();
+        report.setFile(fileName);
+        report.setTable(table.name());
+        imports.put(fileName, report);
+        long started = System.nanoTime();
+        try {
+            Optional<ImportCheckpoint> checkpoint = ImportCheckpoint.load(file);
+            long offset = checkpoint.map(ImportCheckpoint::offset).orElse(0L);
+            report.setResumedFromRow(checkpoint.map(ImportCheckpoint::rows).orElse(0L));
+            report.setRowsRead(report.getResumedFromRow());
+            report.setCopyUsed(copyEnabled && isCopySupported());
+            long fileSize = Files.size(file);
+
+            try (CsvRowReader reader = new CsvRowReader(file, offset)) {
+                if (header && offset == 0) {
+                    reader.next();
+                }
+                Batch batch = new Batch(report.isCopyUsed());
+                boolean more = true;
+                while (more) {
+                    more = fill(table, reader, batch, report);
+                    if (batch.size() > 0) {
+                        Integer inserted = transactionTemplate.execute(status -> write(table, batch));
+                        report.setRowsInserted(report.getRowsInserted() + (inserted == null ? 0 : inserted));
+                    }
+                    new ImportCheckpoint(reader.position(), report.getRowsRead(), fileSize).save(file);
+                    batch.clear();
+                    log.info("Импорт {} в {}: прочитано {} строк, добавлено {}, отклонено {}",
+                            fileName, table, report.getRowsRead(), report.getRowsInserted(), report.getRowsRejected());
+                }
+            }
+            ImportCheckpoint.clear(file);
+            report.setFinished(true);
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            report.setElapsedMs((System.nanoTime() - started) / 1_000_000);
+            running.remove(file);
+        }
+    }
+
+    public List<ImportReportDTO> findAllImports() {
+        return List.copyOf(imports.values());
+    }
+
+    // читает строки в пачку, пока она не заполнится; false - файл закончился
+    private boolean fill(CatalogTable table, CsvRowReader reader, Batch batch, ImportReportDTO report) throws IOException {
+        while (batch.size() < batchSize) {
+            if (!reader.next()) {
+                return false;
+            }
+            report.setRowsRead(report.getRowsRead() + 1);
+            if (!table.accepts(reader)) {
+                report.setRowsRejected(report.getRowsRejected() + 1);
+                continue;
+            }
+            batch.add(table, reader);
+        }
+        return true;
+    }
+
+    private int write(CatalogTable table, Batch batch) {
+        jdbcTemplate.execute(table.createStageSql());
+        if (batch.copy) {
+            jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(table.copyStageSql());
+                byte[] data = batch.data.toByteArray();
+                copyIn.writeToCopy(data, 0, data.length);
+                return copyIn.endCopy();
+            });
+        } else {
+            jdbcTemplate.batchUpdate(table.insertStageSql(), batch.rows);
+        }
+        return jdbcTemplate.update(table.mergeSql());
+    }
+
+    private boolean isCopySupported() {
+        Boolean supported = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class));
+        return Boolean.TRUE.equals(supported);
+    }
+
+    private Path resolve(String fileName) {
+        Path base = Path.of(importDir).toAbsolutePath().normalize();
+        Path file = base.resolve(fileName).normalize();
+        if (!file.startsWith(base) || !Files.isRegularFile(file)) {
+            throw new ImportFileException("Файл импорта не найден: " + fileName);
+        }
+        return file;
+    }
+
+    private static final class Batch {
+        private final boolean copy;
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream(1 << 20);
+        private final List<Object[]> rows = new ArrayList<>();
+        private int size;
+
+        private Batch(boolean copy) {
+            this.copy = copy;
+        }
+
+        private void add(CatalogTable table, CsvRowReader reader) throws IOException {
+            if (copy) {
+                reader.writeLine(data);
+            } else {
+                rows.add(table.values(reader));
+            }
+            size++;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void clear() {
+            data.reset();
+            rows.clear();
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package libraryassistant.service;
+
+import libraryassistant.archive.EventArchive;
+import libraryassistant.entities.BookEvent;
+import libraryassistant.entities.DailyBookStatsId;
+import libraryassistant.entities.DailyReaderStatsId;
+import libraryassistant.entities.EventType;
+import libraryassistant.repository.BookEventRepository;
+import libraryassistant.repository.DailyBookStatsRepository;
+import libraryassistant.repository.DailyReaderStatsRepository;
+import libraryassistant.repository.ReaderRepository;
+import libraryassistant.repository.projection.IdCount;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+@Service
+@RequiredArgsConstructor
+public class DailyStatsService {
+    private static final int READER_CHUNK_SIZE = 1000;
+
+    private final DailyBookStatsRepository dailyBookStatsRepository;
+    private final DailyReaderStatsRepository dailyReaderStatsRepository;
+    private final BookEventRepository bookEventRepository;
+    private final ReaderRepository readerRepository;
+    private final Optional<EventArchive> eventArchive;
+
+    @Transactional
+    public void record(BookEvent event) {
+        LocalDate day = event.getEventDate().toLocalDate();
+        if (event.getEventType() == EventType.BORROW) {
+            dailyBookStatsRepository.increment(day, event.getBook().getId(), 1);
+        }
+        dailyReaderStatsRepository.increment(day, event.getReader().getId(), 1);
+    }
+
+    // пачка событий сворачивается в одно обновление на каждую пару (день, книга) и (день, читатель);
+    // строки счетчиков обновляются в порядке (день, id): параллельные пачки блокируют их в одном порядке
+    // и не попадают во взаимную блокировку
+    @Transactional
+    public void recordAll(List<BookEvent> events) {
+        Map<DailyBookStatsId, Long> bookCounts = new TreeMap<>(Comparator.comparing(DailyBookStatsId::getDay)
+                .thenComparing(DailyBookStatsId::getBookId));
+        Map<DailyReaderStatsId, Long> readerCounts = new TreeMap<>(Comparator.comparing(DailyReaderStatsId::getDay)
+                .thenComparing(DailyReaderStatsId::getReaderId));
+        for (BookEvent event : events) {
+            LocalDate day = event.getEventDate().toLocalDate();
+            if (event.getEventType() == EventType.BORROW) {
+                bookCounts.merge(new DailyBookStatsId(day, event.getBook().getId()), 1L, Long::sum);
+            }
+            readerCounts.merge(new DailyReaderStatsId(day, event.getReader().getId()), 1L, Long::sum);
+        }
+        bookCounts.forEach((id, count) -> dailyBookStatsRepository.increment(id.getDay(), id.getBookId(), count));
+        readerCounts.forEach((id, count) -> dailyReaderStatsRepository.increment(id.getDay(), id.getReaderId(), count));
+    }
+
+    public Optional<UUID> findMostPopularBookId(LocalDateTime startDate, LocalDateTime endDate) {
+        return first(countBooks(startDate, endDate, 1));
+    }
+
+    public Optional<UUID> findMostActiveReaderId(LocalDateTime startDate, LocalDateTime endDate) {
+        return first(countReaders(startDate, endDate, 1));
+    }
+
+    public List<IdCount> countBooks(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        Map<UUID, Long> archived = eventArchive
+                .map(archive -> archivedEdges(startDate, endDate, archive::countBorrowsByBook))
+                .orElse(Map.of());
+        if (archived.isEmpty()) {
+            return countBooksInDatabase(startDate, endDate, limit);
+        }
+        return merge(countBooksInDatabase(startDate, endDate, Integer.MAX_VALUE), archived, limit);
+    }
+
+    public List<IdCount> countReaders(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        Map<UUID, Long> archived = eventArchive
+                .map(archive -> archivedEdges(startDate, endDate, archive::countEventsByReader))
+                .orElse(Map.of());
+        if (archived.isEmpty()) {
+            return countReadersInDatabase(startDate, endDate, limit);
+        }
+        return merge(countReadersInDatabase(startDate, endDate, Integer.MAX_VALUE), archived, limit);
+    }
+
+    public Optional<UUID> findMostPopularBookId(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore) {
+        return first(countBooks(startDate, endDate, bornAfter, bornBefore, 1));
+    }
+
+    public Optional<UUID> findMostActiveReaderId(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore) {
+        return first(countReaders(startDate, endDate, bornAfter, bornBefore, 1));
+    }
+
+    // сводки не различают читателей, поэтому с отбором по дате рождения счет идет по events,
+    // а архивные события периода добавляются целиком, с тем же отбором читателей
+    public List<IdCount> countBooks(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore, int limit) {
+        Map<UUID, Long> archived = eventArchive.filter(it -> it.overlaps(startDate, endDate))
+                .map(archive -> archive.countBorrowsByBook(startDate, endDate,
+                        archivedReadersBornBetween(archive, startDate, endDate, bornAfter, bornBefore)::contains))
+                .orElse(Map.of());
+        if (archived.isEmpty()) {
+            return bookEventRepository.countByBookForReadersBornBetween(startDate, endDate, EventType.BORROW,
+                    bornAfter, bornBefore, PageRequest.of(0, limit));
+        }
+        return merge(bookEventRepository.countByBookForReadersBornBetween(startDate, endDate, EventType.BORROW,
+                bornAfter, bornBefore, PageRequest.of(0, Integer.MAX_VALUE)), archived, limit);
+    }
+
+    public List<IdCount> countReaders(LocalDateTime startDate, LocalDateTime endDate, LocalDate bornAfter, LocalDate bornBefore, int limit) {
+        Map<UUID, Long> archived = eventArchive.filter(it -> it.overlaps(startDate, endDate))
+                .map(archive -> archive.countEventsByReader(startDate, endDate,
+                        archivedReadersBornBetween(archive, startDate, endDate, bornAfter, bornBefore)::contains))
+                .orElse(Map.of());
+        if (archived.isEmpty()) {
+            return bookEventRepository.countByReaderBornBetween(startDate, endDate, bornAfter, bornBefore, PageRequest.of(0, limit));
+        }
+        return merge(bookEventRepository.countByReaderBornBetween(startDate, endDate, bornAfter, bornBefore,
+                PageRequest.of(0, Integer.MAX_VALUE)), archived, limit);
+    }
+
+    @Transactional
+    public int backfill() {
+        dailyBookStatsRepository.deleteAllInBatch();
+        dailyReaderStatsRepository.deleteAllInBatch();
+        int rows = dailyBookStatsRepository.insertFromEventLog() + dailyReaderStatsRepository.insertFromEventLog();
+        // перенесенных в архив событий в events уже нет, их дни досчитываются из сегментов
+        if (eventArchive.isPresent()) {
+            Map<DailyBookStatsId, Long> bookCounts = eventArchive.get().dailyBorrowsByBook();
+            Map<DailyReaderStatsId, Long> readerCounts = eventArchive.get().dailyEventsByReader();
+            bookCounts.forEach((id, count) -> dailyBookStatsRepository.increment(id.getDay(), id.getBookId(), count));
+            readerCounts.forEach((id, count) -> dailyReaderStatsRepository.increment(id.getDay(), id.getReaderId(), count));
+            rows += bookCounts.size() + readerCounts.size();
+        }
+        return rows;
+    }
+
+    private List<IdCount> countBooksInDatabase(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        LocalDate fromDay = firstFullDay(startDate);
+        LocalDate toDay = endDate.toLocalDate();
+        if (!fromDay.isBefore(toDay)) {
+            return bookEventRepository.countByBook(startDate, endDate, EventType.BORROW, PageRequest.of(0, limit));
+        }
+        return dailyBookStatsRepository.countByBook(startDate, fromDay, fromDay.atStartOfDay(),
+                toDay, toDay.atStartOfDay(), endDate, limit);
+    }
+
+    private List<IdCount> countReadersInDatabase(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        LocalDate fromDay = firstFullDay(startDate);
+        LocalDate toDay = endDate.toLocalDate();
+        if (!fromDay.isBefore(toDay)) {
+            return bookEventRepository.countByReader(startDate, endDate, PageRequest.of(0, limit));
+        }
+        return dailyReaderStatsRepository.countByReader(startDate, fromDay, fromDay.atStartOfDay(),
+                toDay, toDay.atStartOfDay(), endDate, limit);
+    }
+
+    // первый день, целиком попадающий в период
+    private LocalDate firstFullDay(LocalDateTime startDate) {
+        LocalDate day = startDate.toLocalDate();
+        return startDate.equals(day.atStartOfDay()) ? day : day.plusDays(1);
+    }
+
+    // даты рождения читаются только для читателей архивных сегментов периода, пачками, чтобы не упереться
+    // в предел числа параметров запроса
+    private Set<UUID> archivedReadersBornBetween(EventArchive archive, LocalDateTime startDate, LocalDateTime endDate,
+                                                 LocalDate bornAfter, LocalDate bornBefore) {
+        List<UUID> readerIds = List.copyOf(archive.readerIds(startDate, endDate));
+        Set<UUID> born = new HashSet<>();
+        for (int from = 0; from < readerIds.size(); from += READER_CHUNK_SIZE) {
+            born.addAll(readerRepository.findIdsBornBetween(readerIds.subList(from, Math.min(from + READER_CHUNK_SIZE, readerIds.size())),
+                    bornAfter, bornBefore));
+        }
+        return born;
+    }
+
+    // полные дни архивных событий уже есть в сводках, из архива нужны только неполные края периода
+    private Map<UUID, Long> archivedEdges(LocalDateTime startDate, LocalDateTime endDate,
+                                          BiFunction<LocalDateTime, LocalDateTime, Map<UUID, Long>> counter) {
+        LocalDate fromDay = firstFullDay(startDate);
+        LocalDate toDay = endDate.toLocalDate();
+        if (!fromDay.isBefore(toDay)) {
+            return counter.apply(startDate, endDate);
+        }
+        Map<UUID, Long> counts = new HashMap<>(counter.apply(startDate, fromDay.atStartOfDay().minusNanos(1)));
+        counter.apply(toDay.atStartOfDay(), endDate).forEach((id, count) -> counts.merge(id, count, Long::sum));
+        return counts;
+    }
+
+    private List<IdCount> merge(List<IdCount> counts, Map<UUID, Long> archived, int limit) {
+        Map<UUID, Long> totals = new HashMap<>(archived);
+        counts.forEach(count -> totals.merge(count.getId(), count.getTotal(), Long::sum));
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<UUID, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .<IdCount>map(entry -> new Total(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    private Optional<UUID> first(List<IdCount> counts) {
+        return counts.stream().findFirst().map(IdCount::getId);
+    }
+
+    private record Total(UUID id, long total) implements IdCount {
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public long getTotal() {
+            return total;
+        }
+    }
+}
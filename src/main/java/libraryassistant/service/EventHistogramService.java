@@ -0,0 +1,161 @@
+package libraryassistant.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import libraryassistant.archive.ArchiveSegmentPublishedEvent;
+import libraryassistant.archive.EventArchive;
+import libraryassistant.dto.HistogramBucketDTO;
+import libraryassistant.dto.HistogramGranularity;
+import libraryassistant.engine.BookEventsSavedEvent;
+import libraryassistant.entities.EventType;
+import libraryassistant.exeption.custom.InvalidHistogramRangeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Гистограмма выдач и возвратов по часам, дням или неделям.
+ * Закрытые корзины (конец которых уже прошел) не меняются, поэтому хранятся в кэше, и запрос считает в базе
+ * только корзины, которых в кэше нет, - обычно одну текущую открытую. События, записанные задним числом,
+ * удаляют из кэша свои корзины после фиксации транзакции, публикация сегмента архива - корзины его периода.
+ */
+@Service
+public class EventHistogramService {
+    static final int MAX_BUCKETS = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Optional<EventArchive> eventArchive;
+    private final Cache<BucketKey, HistogramBucketDTO> closedBuckets;
+    // растет перед каждым удалением из кэша; результат запроса, начатого до удаления, в кэш не кладется
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public EventHistogramService(JdbcTemplate jdbcTemplate,
+                                 Optional<EventArchive> eventArchive,
+                                 @Value("${library.histogram-cache.max-size}") long maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventArchive = eventArchive;
+        this.closedBuckets = Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    public List<HistogramBucketDTO> findHistogram(LocalDateTime startDate, LocalDateTime endDate, HistogramGranularity granularity) {
+        if (startDate.isAfter(endDate)) {
+            throw new InvalidHistogramRangeException("Дата начала периода позже даты конца");
+        }
+        List<LocalDateTime> starts = new ArrayList<>();
+        LocalDateTime to = granularity.next(granularity.truncate(endDate));
+        for (LocalDateTime start = granularity.truncate(startDate); start.isBefore(to); start = granularity.next(start)) {
+            if (starts.size() == MAX_BUCKETS) {
+                throw new InvalidHistogramRangeException("Период слишком длинный: больше " + MAX_BUCKETS + " корзин, выберите более крупную гранулярность");
+            }
+            starts.add(start);
+        }
+
+        HistogramBucketDTO[] buckets = new HistogramBucketDTO[starts.size()];
+        int firstMissing = -1;
+        int lastMissing = -1;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = closedBuckets.getIfPresent(new BucketKey(granularity, starts.get(i)));
+            if (buckets[i] == null) {
+                firstMissing = firstMissing < 0 ? i : firstMissing;
+                lastMissing = i;
+            }
+        }
+        if (firstMissing < 0) {
+            return List.of(buckets);
+        }
+
+        // одним запросом считаются все корзины от первой до последней отсутствующей в кэше
+        long version = invalidations.get();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime from = starts.get(firstMissing);
+        LocalDateTime until = granularity.next(starts.get(lastMissing));
+        Map<LocalDateTime, HistogramBucketDTO> counted = count(from, until, granularity);
+        for (int i = firstMissing; i <= lastMissing; i++) {
+            LocalDateTime start = starts.get(i);
+            buckets[i] = counted.getOrDefault(start, new HistogramBucketDTO(start, 0, 0));
+            if (!granularity.next(start).isAfter(now) && invalidations.get() == version) {
+                closedBuckets.put(new BucketKey(granularity, start), buckets[i]);
+            }
+        }
+        return List.of(buckets);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEventsSaved(BookEventsSavedEvent saved) {
+        invalidations.incrementAndGet();
+        for (BookEventsSavedEvent.Row row : saved.events()) {
+            for (HistogramGranularity granularity : HistogramGranularity.values()) {
+                closedBuckets.invalidate(new BucketKey(granularity, granularity.truncate(row.eventDate())));
+            }
+        }
+    }
+
+    // между удалением событий из events и публикацией сегмента запрос не видит их ни там, ни там
+    @EventListener
+    public void onArchiveSegmentPublished(ArchiveSegmentPublishedEvent published) {
+        invalidations.incrementAndGet();
+        closedBuckets.asMap().keySet().removeIf(key -> key.start().isBefore(published.toDate())
+                && key.granularity().next(key.start()).isAfter(published.fromDate()));
+    }
+
+    // счет в базе по date_trunc над индексированным event_date плюс события, перенесенные в архив
+    private Map<LocalDateTime, HistogramBucketDTO> count(LocalDateTime from, LocalDateTime to, HistogramGranularity granularity) {
+        Map<LocalDateTime, HistogramBucketDTO> counted = new HashMap<>();
+        jdbcTemplate.query("""
+                        select date_trunc('%s', event_date),
+                               count(*) filter (where event_type = 'BORROW'),
+                               count(*) filter (where event_type = 'RETURN')
+                        from events
+                        where event_date >= ? and event_date < ?
+                        group by 1""".formatted(granularity.sqlUnit()),
+                (RowCallbackHandler) rs -> {
+                    LocalDateTime start = rs.getObject(1, LocalDateTime.class);
+                    counted.put(start, new HistogramBucketDTO(start, rs.getLong(2), rs.getLong(3)));
+                }, from, to);
+        eventArchive.ifPresent(archive -> {
+            long fromMillis = toMillis(from);
+            long toMillis = toMillis(to);
+            archive.forEachSegment(segment -> {
+                if (!segment.overlaps(fromMillis, toMillis)) {
+                    return;
+                }
+                for (int row = 0; row < segment.rows(); row++) {
+                    long millis = segment.timestamp(row);
+                    if (millis < fromMillis || millis >= toMillis) {
+                        continue;
+                    }
+                    LocalDateTime start = granularity.truncate(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+                    HistogramBucketDTO bucket = counted.computeIfAbsent(start, key -> new HistogramBucketDTO(key, 0, 0));
+                    if (segment.eventType(row) == EventType.BORROW) {
+                        bucket.setBorrows(bucket.getBorrows() + 1);
+                    } else {
+                        bucket.setReturns(bucket.getReturns() + 1);
+                    }
+                }
+            });
+        });
+        return counted;
+    }
+
+    // время событий - локальное время сервера без зоны, как в LocalDateTime.now() при записи
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private record BucketKey(HistogramGranularity granularity, LocalDateTime start) {
+    }
+}
@@ -0,0 +1,105 @@
+package libraryassistant.service;
+
+import libraryassistant.dto.EventPartitionDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Помесячные секции таблицы events (миграция V4).
+ * Секции на library.partitions.months-ahead месяцев вперед создаются при старте и по расписанию.
+ * Запросы за период отсекают лишние секции по event_date. Старые события выносит из таблицы архив событий
+ * (EventArchive), который учитывают все пересчеты: месяц целиком старше границы он переносит в сегмент вместе
+ * с секцией, отсоединяя и удаляя ее.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventPartitionService {
+    private static final String DEFAULT_PARTITION = "events_default";
+    private static final Pattern MONTH_PARTITION = Pattern.compile("events_\\d{4}_\\d{2}");
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${library.partitions.months-ahead}")
+    private int monthsAhead;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${library.partitions.cron}")
+    public void createFuturePartitions() {
+        YearMonth current = YearMonth.now();
+        createPartitions(current, current.plusMonths(monthsAhead));
+    }
+
+    public List<EventPartitionDTO> createPartitions(YearMonth from, YearMonth to) {
+        Set<String> existing = partitionNames();
+        List<EventPartitionDTO> created = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            String name = partitionName(month);
+            if (existing.contains(name)) {
+                continue;
+            }
+            YearMonth partitionMonth = month;
+            transactionTemplate.executeWithoutResult(status -> createPartition(name, partitionMonth));
+            log.info("Создана секция {}", name);
+            created.add(toDTO(name));
+        }
+        return created;
+    }
+
+    public List<EventPartitionDTO> findAllPartitions() {
+        return partitionNames().stream().sorted().map(this::toDTO).toList();
+    }
+
+    // секция создается отдельной таблицей, в нее переносятся строки этого месяца из events_default,
+    // и только потом она присоединяется - иначе присоединение упадет на строках секции по умолчанию
+    private void createPartition(String name, YearMonth month) {
+        String from = month.atDay(1).toString();
+        String to = month.plusMonths(1).atDay(1).toString();
+        jdbcTemplate.execute("create table " + name + " (like events including defaults including constraints)");
+        jdbcTemplate.update("with moved as (delete from " + DEFAULT_PARTITION
+                + " where event_date >= timestamp '" + from + "' and event_date < timestamp '" + to + "' returning *)"
+                + " insert into " + name + " select * from moved");
+        jdbcTemplate.execute("alter table events attach partition " + name
+                + " for values from ('" + from + "') to ('" + to + "')");
+    }
+
+    private Set<String> partitionNames() {
+        return jdbcTemplate.queryForList("""
+                select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid
+                where i.inhparent = 'events'::regclass
+                """, String.class).stream().collect(Collectors.toSet());
+    }
+
+    private EventPartitionDTO toDTO(String name) {
+        if (!MONTH_PARTITION.matcher(name).matches()) {
+            return new EventPartitionDTO(name, null, null);
+        }
+        YearMonth month = monthOf(name);
+        return new EventPartitionDTO(name, month.atDay(1), month.plusMonths(1).atDay(1));
+    }
+
+    public static String partitionName(YearMonth month) {
+        return "events_" + month.format(MONTH_SUFFIX);
+    }
+
+    private static YearMonth monthOf(String name) {
+        return YearMonth.parse(name.substring("events_".length()), MONTH_SUFFIX);
+    }
+}
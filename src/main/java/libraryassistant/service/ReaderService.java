@@ -1,57 +1,152 @@
 package libraryassistant.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import libraryassistant.cache.LookupCache;
+import libraryassistant.dto.BulkItemResultDTO;
+import libraryassistant.dto.BulkItemStatus;
+import libraryassistant.dto.CursorPage;
 import libraryassistant.dto.ReaderDTO;
+import libraryassistant.engine.ReaderUpdatedEvent;
 import libraryassistant.entities.Reader;
 import libraryassistant.exeption.custom.ReaderAlreadyExistException;
 import libraryassistant.exeption.custom.ReaderNotFoundException;
 import libraryassistant.mapper.Mapper;
+import libraryassistant.pagination.Cursors;
 import libraryassistant.repository.ReaderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
+@Timed(value = "library.service", histogram = true)
 public class ReaderService {
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     private final ReaderRepository readerRepository;
     private final Mapper mapper;
+    private final EntityManager entityManager;
+    private final LookupCache lookupCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ReaderDTO createReader(ReaderDTO readerDTO) {
-        if (readerRepository.findByFirstNameAndSecondName(readerDTO.getFirstName(), readerDTO.getSecondName()).isPresent()) {
+        if (lookupCache.findReaderByName(readerDTO.getFirstName(), readerDTO.getSecondName()).isPresent()) {
             throw new ReaderAlreadyExistException("Такой читатель уже существует");
         }
         Reader reader = mapper.toReader(readerDTO);
         return mapper.toReaderDTO(readerRepository.save(reader));
     }
 
+    // дубликаты проверяются одним запросом на пачку, вставка идет JDBC-батчами (hibernate.jdbc.batch_size)
+    @Transactional
+    public List<BulkItemResultDTO<ReaderDTO>> createReaders(List<ReaderDTO> readerDTOs) {
+        List<BulkItemResultDTO<ReaderDTO>> results = new ArrayList<>(Collections.nCopies(readerDTOs.size(), null));
+        Set<FullName> seenNames = new HashSet<>();
+        for (int from = 0; from < readerDTOs.size(); from += BULK_CHUNK_SIZE) {
+            List<ReaderDTO> chunk = readerDTOs.subList(from, Math.min(from + BULK_CHUNK_SIZE, readerDTOs.size()));
+            seenNames.addAll(findExistingNames(chunk));
+
+            List<Integer> indexes = new ArrayList<>();
+            List<Reader> readers = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                ReaderDTO readerDTO = chunk.get(i);
+                if (readerDTO == null) {
+                    results.set(from + i, new BulkItemResultDTO<>(from + i, BulkItemStatus.REJECTED, null, "Пустой элемент пачки"));
+                    continue;
+                }
+                if (!seenNames.add(new FullName(readerDTO.getFirstName(), readerDTO.getSecondName()))) {
+                    results.set(from + i, new BulkItemResultDTO<>(from + i, BulkItemStatus.DUPLICATE, readerDTO, "Такой читатель уже существует"));
+                    continue;
+                }
+                Reader reader = mapper.toReader(readerDTO);
+                reader.setId(null);
+                indexes.add(from + i);
+                readers.add(reader);
+            }
+
+            List<Reader> saved = readerRepository.saveAll(readers);
+            for (int i = 0; i < saved.size(); i++) {
+                results.set(indexes.get(i), new BulkItemResultDTO<>(indexes.get(i), BulkItemStatus.CREATED, mapper.toReaderDTO(saved.get(i)), null));
+            }
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return results;
+    }
+
     public ReaderDTO findReaderById(UUID id) {
         return mapper.toReaderDTO(readerRepository.findById(id)
                 .orElseThrow(() -> new ReaderNotFoundException("Читатель с id " + id + " не найден")));
     }
 
     public ReaderDTO findReaderByFullName(String firstName, String secondName) {
-        return mapper.toReaderDTO(readerRepository.findByFirstNameAndSecondName(firstName, secondName)
-                .orElseThrow(() -> new ReaderNotFoundException("Читатель с именем " + firstName + " " + secondName + " не найден")));
+        return lookupCache.findReaderByName(firstName, secondName)
+                .orElseThrow(() -> new ReaderNotFoundException("Читатель с именем " + firstName + " " + secondName + " не найден"));
     }
 
     public ReaderDTO updateReader(UUID id, ReaderDTO updatedReaderDTO) {
         return readerRepository.findById(id).map(reader -> {
+            String oldFirstName = reader.getFirstName();
+            String oldSecondName = reader.getSecondName();
+            lookupCache.evictReader(id, oldFirstName, oldSecondName);
             reader.setFirstName(updatedReaderDTO.getFirstName());
             reader.setSecondName(updatedReaderDTO.getSecondName());
             reader.setBirthDate(updatedReaderDTO.getBirthDate());
-            return mapper.toReaderDTO(readerRepository.save(reader));
+            ReaderDTO saved = mapper.toReaderDTO(readerRepository.save(reader));
+            // save уже зафиксирован; поиск по старому имени между первой очисткой и фиксацией мог вернуть в кэш
+            // строку до изменения
+            lookupCache.evictReader(id, oldFirstName, oldSecondName);
+            lookupCache.evictReader(id, saved.getFirstName(), saved.getSecondName());
+            eventPublisher.publishEvent(new ReaderUpdatedEvent(saved.getId(), saved.getBirthDate()));
+            return saved;
         }).orElseThrow(() -> new ReaderNotFoundException("Читатель с id " + id + " не найден"));
     }
 
-    public List<ReaderDTO> findAllReaders() {
-        return readerRepository.findAll().stream().map(mapper::toReaderDTO).toList();
+    public CursorPage<ReaderDTO> findAllReaders(String after, int limit) {
+        List<Reader> readers = after == null
+                ? readerRepository.findAllByOrderByIdAsc(Cursors.probe(limit))
+                : readerRepository.findByIdGreaterThanOrderByIdAsc(Cursors.decodeId(after), Cursors.probe(limit));
+        return Cursors.page(readers, limit, mapper::toReaderDTO, reader -> Cursors.encodeId(reader.getId()));
     }
 
     public void deleteReaderById(UUID id) {
-        if (!readerRepository.existsById(id)) {
-            throw new ReaderNotFoundException("Читатель с id " + id + " не найден");
-        }
+        Reader reader = readerRepository.findById(id)
+                .orElseThrow(() -> new ReaderNotFoundException("Читатель с id " + id + " не найден"));
         readerRepository.deleteById(id);
+        lookupCache.evictReader(id, reader.getFirstName(), reader.getSecondName());
+    }
+
+    // уже существующие пары имя-фамилия из пачки: сравниваются именно пары, а не произведение имен и фамилий
+    private Set<FullName> findExistingNames(List<ReaderDTO> chunk) {
+        List<Object> params = new ArrayList<>();
+        for (ReaderDTO readerDTO : chunk) {
+            if (readerDTO != null && readerDTO.getFirstName() != null && readerDTO.getSecondName() != null) {
+                params.add(readerDTO.getFirstName());
+                params.add(readerDTO.getSecondName());
+            }
+        }
+        Set<FullName> existing = new HashSet<>();
+        if (params.isEmpty()) {
+            return existing;
+        }
+        String values = String.join(", ", Collections.nCopies(params.size() / 2, "(?, ?)"));
+        jdbcTemplate.query("select first_name, second_name from readers where (first_name, second_name) in (values " + values + ")",
+                (RowCallbackHandler) rs -> existing.add(new FullName(rs.getString(1), rs.getString(2))), params.toArray());
+        return existing;
+    }
+
+    private record FullName(String firstName, String secondName) {
     }
 }
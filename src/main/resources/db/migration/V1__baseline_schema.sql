@@ -0,0 +1,57 @@
+-- схема, которую раньше создавал hibernate (ddl-auto=create-drop)
+
+create table books
+(
+    id     uuid not null,
+    title  varchar(255),
+    author varchar(255),
+    constraint pk_books primary key (id)
+);
+
+create table readers
+(
+    id          uuid not null,
+    first_name  varchar(255),
+    second_name varchar(255),
+    birth_date  date,
+    constraint pk_readers primary key (id)
+);
+
+create table events
+(
+    id         uuid not null,
+    reader_id  uuid not null,
+    book_id    uuid not null,
+    event_date timestamp(6),
+    event_type varchar(255),
+    constraint pk_events primary key (id),
+    constraint fk_events_reader foreign key (reader_id) references readers (id),
+    constraint fk_events_book foreign key (book_id) references books (id),
+    constraint ck_events_type check (event_type in ('BORROW', 'RETURN'))
+);
+
+create table book_loan_state
+(
+    book_id         uuid not null,
+    reader_id       uuid,
+    last_event_type varchar(255),
+    last_event_date timestamp(6),
+    constraint pk_book_loan_state primary key (book_id),
+    constraint ck_book_loan_state_type check (last_event_type in ('BORROW', 'RETURN'))
+);
+
+create table daily_book_stats
+(
+    day          date   not null,
+    book_id      uuid   not null,
+    borrow_count bigint not null,
+    constraint pk_daily_book_stats primary key (day, book_id)
+);
+
+create table daily_reader_stats
+(
+    day         date   not null,
+    reader_id   uuid   not null,
+    event_count bigint not null,
+    constraint pk_daily_reader_stats primary key (day, reader_id)
+);
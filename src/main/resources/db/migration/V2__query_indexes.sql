@@ -0,0 +1,13 @@
+-- последнее событие по книге: findFirstByBookIdOrderByEventDateDesc, findLatestEventPerBook
+create index idx_events_book_date on events (book_id, event_date desc);
+
+-- выборки и агрегаты за период: findByEventDateBetweenAndEventType, countByBook, выгрузка
+create index idx_events_date_type on events (event_date, event_type);
+
+-- история читателя за период, countByReader по краевым дням
+create index idx_events_reader_date on events (reader_id, event_date);
+
+-- поиск по названию и по имени читателя, заодно запрещает дубликаты
+create unique index ux_books_title on books (title);
+
+create unique index ux_readers_name on readers (first_name, second_name);
@@ -0,0 +1,14 @@
+-- UUIDv7 для вставок из SQL (импорт каталога): 48 бит времени в мс поверх случайного UUIDv4,
+-- биты версии меняются с 0100 на 0111
+create or replace function uuid_v7() returns uuid as
+$$
+select encode(
+               set_bit(
+                       set_bit(
+                               overlay(uuid_send(gen_random_uuid())
+                                       placing substring(int8send(floor(extract(epoch from clock_timestamp()) * 1000)::bigint) from 3)
+                                       from 1 for 6),
+                               52, 1),
+                       53, 1),
+               'hex')::uuid;
+$$ language sql volatile;
@@ -0,0 +1,57 @@
+-- events становится секционированной по месяцам таблицей (range по event_date).
+-- Первичный ключ секционированной таблицы обязан включать ключ секционирования, поэтому он (id, event_date).
+
+alter table events rename to events_legacy;
+alter table events_legacy rename constraint pk_events to pk_events_legacy;
+
+create table events
+(
+    id         uuid         not null,
+    reader_id  uuid         not null,
+    book_id    uuid         not null,
+    event_date timestamp(6) not null,
+    event_type varchar(255),
+    constraint pk_events primary key (id, event_date),
+    constraint fk_events_reader foreign key (reader_id) references readers (id),
+    constraint fk_events_book foreign key (book_id) references books (id),
+    constraint ck_events_type check (event_type in ('BORROW', 'RETURN'))
+) partition by range (event_date);
+
+-- строки вне созданных месяцев, их переносит в нужную секцию EventPartitionService при ее создании
+create table events_default partition of events default;
+
+-- секции с первого месяца существующих данных и на три месяца вперед, дальше их создает приложение
+do
+$$
+    declare
+        month      date;
+        last_month date := date_trunc('month', now()) + interval '3 months';
+    begin
+        select coalesce(date_trunc('month', min(event_date)), date_trunc('month', now())) into month from events_legacy;
+        while month <= last_month
+            loop
+                execute format('create table %I partition of events for values from (%L) to (%L)',
+                               'events_' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+                month := month + interval '1 month';
+            end loop;
+    end
+$$;
+
+-- событий без даты приложение не создает; если такие строки есть, они не подставляются под выдуманную дату,
+-- а переносятся как есть в отдельную таблицу для ручного разбора
+create table events_undated as
+select id, reader_id, book_id, event_date, event_type
+from events_legacy
+where event_date is null;
+
+insert into events (id, reader_id, book_id, event_date, event_type)
+select id, reader_id, book_id, event_date, event_type
+from events_legacy
+where event_date is not null;
+
+drop table events_legacy;
+
+-- индексы на секционированной таблице создаются на каждой секции, в том числе на будущих
+create index idx_events_book_date on events (book_id, event_date desc);
+create index idx_events_date_type on events (event_date, event_type);
+create index idx_events_reader_date on events (reader_id, event_date);
@@ -0,0 +1,12 @@
+-- журнал сегментов архива событий: файл сегмента считается опубликованным, только если запись о нем зафиксирована
+-- в одной транзакции с удалением перенесенных строк из events
+create table event_archive_segments
+(
+    name        varchar(255) not null,
+    from_date   timestamp(6) not null,
+    to_date     timestamp(6) not null,
+    row_count   bigint       not null,
+    size_bytes  bigint       not null,
+    archived_at timestamp(6) not null default now(),
+    constraint pk_event_archive_segments primary key (name)
+);
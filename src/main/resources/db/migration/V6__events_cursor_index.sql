@@ -0,0 +1,2 @@
+-- постраничный обход журнала по курсору (event_date, id): findFirstPage, findPageAfter
+create index idx_events_date_id on events (event_date, id);
@@ -0,0 +1,18 @@
+package libraryassistant.perf;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сгенерированные данные в том виде, в каком они нужны нагрузке: названия книг и номера читателей
+ * в порядке популярности (читатель с номером i - "Имя{i} Фамилия{i}") и период истории событий.
+ */
+public record Dataset(String[] titlesByRank, int[] readersByRank, LocalDateTime from, LocalDateTime to) {
+
+    public String firstName(int rank) {
+        return "Имя" + readersByRank[rank];
+    }
+
+    public String secondName(int rank) {
+        return "Фамилия" + readersByRank[rank];
+    }
+}
@@ -0,0 +1,171 @@
+package libraryassistant.perf;
+
+import libraryassistant.engine.AnalyticsEngine;
+import libraryassistant.engine.LiveLeaderboards;
+import libraryassistant.id.TimeOrderedUuidGenerator;
+import libraryassistant.service.BookEventService;
+import libraryassistant.service.EventPartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Генератор синтетических данных для профиля perf: книги, читатели и история выдач и возвратов.
+ * Популярность книг и активность читателей распределены по Ципфу, история корректна: книга выдается только
+ * свободной и возвращается тем, кто ее взял. При одинаковом seed получаются одни и те же названия, имена
+ * и последовательность событий (идентификаторы UUIDv7 при этом новые). Строки загружаются через COPY,
+ * после чего пересчитываются состояние книг и дневные счетчики.
+ */
+@Slf4j
+@Component
+@Profile("perf")
+@RequiredArgsConstructor
+public class DatasetGenerator {
+    private static final int COPY_CHUNK_BYTES = 1 << 20;
+    private static final LocalDate BIRTH_FROM = LocalDate.of(1950, 1, 1);
+    private static final int BIRTH_DAYS = 365 * 58;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EventPartitionService eventPartitionService;
+    private final BookEventService bookEventService;
+    private final Optional<AnalyticsEngine> analyticsEngine;
+    private final Optional<LiveLeaderboards> liveLeaderboards;
+
+    @Value("${library.perf.books}")
+    private int books;
+
+    @Value("${library.perf.readers}")
+    private int readers;
+
+    @Value("${library.perf.events}")
+    private int events;
+
+    @Value("${library.perf.days}")
+    private int days;
+
+    @Value("${library.perf.seed}")
+    private long seed;
+
+    @Value("${library.perf.zipf-exponent}")
+    private double zipfExponent;
+
+    public Dataset generate() {
+        long started = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+        // история заканчивается началом текущих суток, чтобы скользящие рейтинги и открытые корзины не были пустыми
+        LocalDateTime to = LocalDate.now().atStartOfDay();
+        LocalDateTime from = to.minusDays(days);
+
+        UUID[] bookIds = ids(books);
+        UUID[] readerIds = ids(readers);
+        copy("copy books (id, title, author) from stdin with (format csv)", books,
+                (i, line) -> line.append(bookIds[i]).append(",Книга ").append(i).append(",Автор ").append(i % 5000));
+        copy("copy readers (id, first_name, second_name, birth_date) from stdin with (format csv)", readers,
+                (i, line) -> line.append(readerIds[i]).append(",Имя").append(i).append(",Фамилия").append(i)
+                        .append(',').append(BIRTH_FROM.plusDays(random.nextInt(BIRTH_DAYS))));
+        log.info("Загружено {} книг и {} читателей", books, readers);
+
+        // ранг популярности не совпадает с порядком вставки, иначе самые популярные книги оказались бы рядом в индексах
+        int[] bookByRank = permutation(books, random);
+        int[] readerByRank = permutation(readers, random);
+        ZipfSampler bookSampler = new ZipfSampler(books, zipfExponent, random);
+        ZipfSampler readerSampler = new ZipfSampler(readers, zipfExponent, random);
+        int[] borrower = new int[books];
+        Arrays.fill(borrower, -1);
+        long spanMillis = Duration.between(from, to).toMillis();
+
+        eventPartitionService.createPartitions(YearMonth.from(from), YearMonth.from(to));
+        copy("copy events (id, reader_id, book_id, event_date, event_type) from stdin with (format csv)", events, (i, line) -> {
+            int book = bookByRank[bookSampler.next()];
+            boolean borrow = borrower[book] < 0;
+            int reader = borrow ? readerByRank[readerSampler.next()] : borrower[book];
+            borrower[book] = borrow ? reader : -1;
+            line.append(TimeOrderedUuidGenerator.next()).append(',').append(readerIds[reader]).append(',').append(bookIds[book])
+                    .append(',').append(from.plusNanos(spanMillis * i / events * 1_000_000)).append(borrow ? ",BORROW" : ",RETURN");
+        });
+        log.info("Загружено {} событий за период [{}, {})", events, from, to);
+
+        bookEventService.rebuildLoanState();
+        bookEventService.backfillDailyStats();
+        jdbcTemplate.execute("analyze");
+        analyticsEngine.ifPresent(AnalyticsEngine::reload);
+        liveLeaderboards.ifPresent(LiveLeaderboards::load);
+        log.info("Данные сгенерированы за {} с", (System.nanoTime() - started) / 1_000_000_000);
+
+        String[] titles = new String[books];
+        for (int rank = 0; rank < books; rank++) {
+            titles[rank] = "Книга " + bookByRank[rank];
+        }
+        return new Dataset(titles, readerByRank, from, to);
+    }
+
+    private void copy(String sql, int rows, LineWriter writer) {
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                ByteArrayOutputStream chunk = new ByteArrayOutputStream(COPY_CHUNK_BYTES + 4096);
+                StringBuilder line = new StringBuilder(128);
+                for (int i = 0; i < rows; i++) {
+                    line.setLength(0);
+                    writer.write(i, line);
+                    chunk.writeBytes(line.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+                    if (chunk.size() >= COPY_CHUNK_BYTES) {
+                        copyIn.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+                        chunk.reset();
+                    }
+                }
+                copyIn.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+                return copyIn.endCopy();
+            } catch (SQLException | RuntimeException e) {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                throw e;
+            }
+        });
+    }
+
+    private static UUID[] ids(int count) {
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = TimeOrderedUuidGenerator.next();
+        }
+        return ids;
+    }
+
+    private static int[] permutation(int size, SplittableRandom random) {
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+        return permutation;
+    }
+
+    private interface LineWriter {
+        void write(int row, StringBuilder line);
+    }
+}
@@ -0,0 +1,37 @@
+package libraryassistant.perf;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * В профиле perf приложение работает со встроенным PostgreSQL (настоящий сервер из бинарников в jar),
+ * а не с H2: схема использует секционирование, date_trunc и функции PostgreSQL.
+ * База создается заново при каждом запуске, схему накатывает Flyway.
+ */
+@Configuration
+@Profile("perf")
+public class EmbeddedPostgresConfig {
+
+    @Bean(destroyMethod = "close")
+    public EmbeddedPostgres embeddedPostgres() throws IOException {
+        return EmbeddedPostgres.builder()
+                .setServerConfig("shared_buffers", "512MB")
+                .setServerConfig("max_wal_size", "4GB")
+                .start();
+    }
+
+    @Bean
+    public DataSource dataSource(EmbeddedPostgres embeddedPostgres) {
+        return DataSourceBuilder.create()
+                .url(embeddedPostgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true")
+                .username("postgres")
+                .password("postgres")
+                .build();
+    }
+}
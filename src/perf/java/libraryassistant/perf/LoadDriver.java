@@ -0,0 +1,189 @@
+package libraryassistant.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Нагрузка на REST-контроллеры с заданной частотой запросов (открытая модель: следующий запрос уходит
+ * по расписанию, не дожидаясь ответа на предыдущий). Задержка считается от запланированного времени отправки,
+ * поэтому очередь на стороне сервера попадает в перцентили, а не прячется в пропущенных запросах.
+ * Запросы первых library.perf.warmup секунд не учитываются. Последовательность запросов задается seed.
+ */
+@Slf4j
+@Component
+@Profile("perf")
+@RequiredArgsConstructor
+public class LoadDriver {
+    private static final int CLIENT_THREADS = 32;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${library.perf.rate}")
+    private double rate;
+
+    @Value("${library.perf.warmup}")
+    private Duration warmup;
+
+    @Value("${library.perf.duration}")
+    private Duration duration;
+
+    @Value("${library.perf.seed}")
+    private long seed;
+
+    @Value("${library.perf.zipf-exponent}")
+    private double zipfExponent;
+
+    @Value("${library.perf.report-file}")
+    private Path reportFile;
+
+    public List<EndpointReport> run(String baseUrl, Dataset dataset) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Endpoint> endpoints = endpoints(dataset, random);
+        int totalWeight = endpoints.stream().mapToInt(Endpoint::weight).sum();
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENT_THREADS);
+        HttpClient client = HttpClient.newBuilder().executor(executor).connectTimeout(Duration.ofSeconds(5)).build();
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+
+        log.info("Нагрузка {} запросов/с: прогрев {}, замер {}", rate, warmup, duration);
+        long intervalNanos = (long) (1_000_000_000L / rate);
+        long started = System.nanoTime();
+        long measureFrom = started + warmup.toNanos();
+        long until = measureFrom + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long scheduled = started + i * intervalNanos;
+            if (scheduled >= until) {
+                break;
+            }
+            for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = pick(endpoints, random.nextInt(totalWeight));
+            boolean measured = scheduled >= measureFrom;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path().apply(random)))
+                    .timeout(Duration.ofSeconds(30)).GET().build();
+            requests.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        if (measured) {
+                            endpoint.stats().record(System.nanoTime() - scheduled, error == null && response.statusCode() < 400);
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).join();
+        executor.shutdown();
+
+        double seconds = duration.toNanos() / 1e9;
+        List<EndpointReport> reports = endpoints.stream().map(endpoint -> endpoint.stats().report(endpoint.name(), seconds)).toList();
+        log.info(String.format("%-28s %9s %7s %9s %9s %9s %9s", "endpoint", "requests", "errors", "req/s", "p50, мс", "p99, мс", "max, мс"));
+        for (EndpointReport report : reports) {
+            log.info(String.format("%-28s %9d %7d %9.1f %9.2f %9.2f %9.2f", report.endpoint(), report.requests(), report.errors(),
+                    report.throughput(), report.p50Millis(), report.p99Millis(), report.maxMillis()));
+        }
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), reports);
+        log.info("Отчет записан в {}", reportFile.toAbsolutePath());
+        return reports;
+    }
+
+    // смесь чтений, примерно как у панели библиотекаря; записи нагружает стресс-тест выдач и возвратов
+    private List<Endpoint> endpoints(Dataset dataset, SplittableRandom random) {
+        ZipfSampler readers = new ZipfSampler(dataset.readersByRank().length, zipfExponent, random);
+        long days = Duration.between(dataset.from(), dataset.to()).toDays();
+        Function<SplittableRandom, String> month = r -> {
+            LocalDateTime start = dataset.from().plusDays(r.nextLong(Math.max(1, days - 30)));
+            return "startDate=" + start + "&endDate=" + start.plusDays(30);
+        };
+        return List.of(
+                new Endpoint("GET /books", 10, r -> "/books?limit=50", new Stats()),
+                new Endpoint("GET /readers/search", 20, r -> {
+                    int rank = readers.next();
+                    return "/readers/search?firstName=" + encode(dataset.firstName(rank)) + "&secondName=" + encode(dataset.secondName(rank));
+                }, new Stats()),
+                new Endpoint("GET /events", 10, r -> "/events?limit=50", new Stats()),
+                new Endpoint("GET most-popular-book", 15, r -> "/events/most-popular-book?" + month.apply(r), new Stats()),
+                new Endpoint("GET most-active-reader", 15, r -> "/events/most-active-reader?" + month.apply(r), new Stats()),
+                new Endpoint("GET leaderboard/books", 15, r -> "/events/leaderboard/books?window=LAST_7D&limit=10", new Stats()),
+                new Endpoint("GET histogram", 15, r -> "/events/histogram?startDate=" + dataset.to().minusDays(90)
+                        + "&endDate=" + dataset.to() + "&granularity=DAY", new Stats()));
+    }
+
+    private static Endpoint pick(List<Endpoint> endpoints, int point) {
+        for (Endpoint endpoint : endpoints) {
+            point -= endpoint.weight();
+            if (point < 0) {
+                return endpoint;
+            }
+        }
+        throw new IllegalStateException("Вес вне диапазона");
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    public record EndpointReport(String endpoint, long requests, long errors, double throughput,
+                                 double p50Millis, double p99Millis, double maxMillis) {
+    }
+
+    private record Endpoint(String name, int weight, Function<SplittableRandom, String> path, Stats stats) {
+    }
+
+    private static final class Stats {
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void record(long nanos, boolean ok) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        synchronized EndpointReport report(String name, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new EndpointReport(name, size, errors, size / seconds,
+                    millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)), millis(size == 0 ? 0 : sorted[size - 1]));
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package libraryassistant.perf;
+
+import libraryassistant.LibraryApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Нагрузочный прогон: приложение поднимается в профиле perf на встроенном PostgreSQL,
+ * база заполняется генератором, затем нагрузка обращается к контроллерам по HTTP и печатает перцентили.
+ * Запуск: ./gradlew perf
+ */
+public class PerfApplication {
+
+    public static void main(String[] args) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApplication.class).profiles("perf").run(args)) {
+            Dataset dataset = context.getBean(DatasetGenerator.class).generate();
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            context.getBean(LoadDriver.class).run(baseUrl, dataset);
+        }
+    }
+}
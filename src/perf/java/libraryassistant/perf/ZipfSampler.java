@@ -0,0 +1,32 @@
+package libraryassistant.perf;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Выборка индексов [0, size) по закону Ципфа: вероятность k-го элемента пропорциональна 1 / (k + 1)^exponent.
+ * Распределение считается один раз, выборка - двоичный поиск по накопленным вероятностям.
+ */
+final class ZipfSampler {
+    private final double[] cumulative;
+    private final SplittableRandom random;
+
+    ZipfSampler(int size, double exponent, SplittableRandom random) {
+        this.cumulative = new double[size];
+        this.random = random;
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int next() {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int k = index >= 0 ? index : -index - 1;
+        return Math.min(k, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,131 @@
+import libraryassistant.engine.AnalyticsEngine;
+import libraryassistant.engine.BookEventsSavedEvent;
+import libraryassistant.engine.ReaderUpdatedEvent;
+import libraryassistant.entities.EventType;
+import libraryassistant.repository.projection.IdCount;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalyticsEngineTest {
+    private static final LocalDateTime MARCH = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    private final UUID book1 = UUID.randomUUID();
+    private final UUID book2 = UUID.randomUUID();
+    private final UUID young = UUID.randomUUID();
+    private final UUID old = UUID.randomUUID();
+
+    private AnalyticsEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        // без базы: движок наполняется только событиями
+        engine = new AnalyticsEngine(null, null, Optional.empty());
+        engine.onEventsSaved(new BookEventsSavedEvent(List.of(
+                row(book1, old, LocalDate.of(1980, 1, 1), MARCH.plusDays(1), EventType.BORROW),
+                row(book1, old, LocalDate.of(1980, 1, 1), MARCH.plusDays(2), EventType.RETURN),
+                row(book1, old, LocalDate.of(1980, 1, 1), MARCH.plusDays(3), EventType.BORROW),
+                row(book2, young, LocalDate.of(2003, 5, 5), MARCH.plusDays(4), EventType.BORROW))));
+        // событие задним числом вливается в середину колонок
+        engine.onEventsSaved(new BookEventsSavedEvent(List.of(
+                row(book2, young, LocalDate.of(2003, 5, 5), MARCH.plusDays(1).plusHours(1), EventType.RETURN))));
+    }
+
+    @Test
+    public void testMostPopularBookInRange() {
+        assertEquals(Optional.of(book1), engine.findMostPopularBookId(MARCH, MARCH.plusMonths(1), null, null));
+        assertEquals(Optional.of(book2), engine.findMostPopularBookId(MARCH.plusDays(4), MARCH.plusMonths(1), null, null));
+        assertEquals(Optional.empty(), engine.findMostPopularBookId(MARCH.minusMonths(1), MARCH, null, null));
+    }
+
+    @Test
+    public void testReaderBirthDateFilter() {
+        List<IdCount> books = engine.countBooks(MARCH, MARCH.plusMonths(1), LocalDate.of(2000, 12, 31), null, 10);
+
+        assertEquals(1, books.size());
+        assertEquals(book2, books.get(0).getId());
+        assertEquals(Optional.of(young), engine.findMostActiveReaderId(MARCH, MARCH.plusMonths(1), LocalDate.of(2000, 12, 31), null));
+    }
+
+    @Test
+    public void testReadersRankedByEventCount() {
+        List<IdCount> readers = engine.countReaders(MARCH, MARCH.plusMonths(1), null, null, 10);
+
+        assertEquals(old, readers.get(0).getId());
+        assertEquals(3, readers.get(0).getTotal());
+        assertEquals(young, readers.get(1).getId());
+        assertEquals(2, readers.get(1).getTotal());
+    }
+
+    @Test
+    public void testReaderUpdateChangesBirthDateFilter() {
+        engine.onReaderUpdated(new ReaderUpdatedEvent(young, LocalDate.of(1970, 1, 1)));
+
+        assertEquals(Optional.empty(), engine.findMostActiveReaderId(MARCH, MARCH.plusMonths(1), LocalDate.of(2000, 12, 31), null));
+        assertEquals(Optional.of(young), engine.findMostActiveReaderId(MARCH, MARCH.plusMonths(1), null, LocalDate.of(1975, 1, 1)));
+    }
+
+    @Test
+    public void testLateEventKeepsUpdatedBirthDate() {
+        engine.onReaderUpdated(new ReaderUpdatedEvent(young, LocalDate.of(1970, 1, 1)));
+        // строка собрана до изменения читателя и несет старую дату рождения
+        engine.onEventsSaved(new BookEventsSavedEvent(List.of(
+                row(book2, young, LocalDate.of(2003, 5, 5), MARCH.plusDays(5), EventType.BORROW))));
+
+        assertEquals(Optional.empty(), engine.findMostActiveReaderId(MARCH, MARCH.plusMonths(1), LocalDate.of(2000, 12, 31), null));
+    }
+
+    // событий больше порога деления, подсчет в пуле из четырех потоков идет по нескольким кускам
+    @Test
+    public void testParallelCountMatchesSequential() throws Exception {
+        SplittableRandom random = new SplittableRandom(42);
+        UUID[] books = new UUID[50];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = UUID.randomUUID();
+        }
+        Map<UUID, Long> expected = new HashMap<>();
+        LocalDateTime from = MARCH.plusMonths(2);
+        LocalDateTime to = MARCH.plusMonths(3);
+        List<BookEventsSavedEvent.Row> rows = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            UUID book = books[random.nextInt(books.length)];
+            LocalDateTime date = MARCH.plusMonths(1).plusSeconds(random.nextInt(90 * 24 * 3600));
+            EventType type = random.nextBoolean() ? EventType.BORROW : EventType.RETURN;
+            rows.add(row(book, old, LocalDate.of(1980, 1, 1), date, type));
+            if (type == EventType.BORROW && !date.isBefore(from) && !date.isAfter(to)) {
+                expected.merge(book, 1L, Long::sum);
+            }
+        }
+        // пачки перекрываются по времени: каждая следующая вливается в середину колонок
+        for (int start = 0; start < rows.size(); start += 50_000) {
+            engine.onEventsSaved(new BookEventsSavedEvent(rows.subList(start, start + 50_000)));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<IdCount> counts = pool.submit(() -> engine.countBooks(from, to, null, null, books.length)).get();
+            assertEquals(expected.size(), counts.size());
+            for (IdCount count : counts) {
+                assertEquals(expected.get(count.getId()), count.getTotal());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static BookEventsSavedEvent.Row row(UUID book, UUID reader, LocalDate birthDate, LocalDateTime date, EventType type) {
+        return new BookEventsSavedEvent.Row(book, reader, birthDate, date, type);
+    }
+}
@@ -0,0 +1,51 @@
+import libraryassistant.archive.ArchiveSegment;
+import libraryassistant.archive.SegmentColumns;
+import libraryassistant.entities.EventType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveSegmentTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    public void testCountsWithinRange() throws Exception {
+        UUID book1 = UUID.randomUUID();
+        UUID book2 = UUID.randomUUID();
+        UUID reader = UUID.randomUUID();
+        LocalDateTime start = LocalDateTime.of(2022, 3, 1, 0, 0);
+        SegmentColumns columns = new SegmentColumns();
+        columns.add(start, EventType.BORROW, book1, reader);
+        columns.add(start.plusHours(1), EventType.RETURN, book1, reader);
+        columns.add(start.plusHours(2), EventType.BORROW, book2, reader);
+        columns.add(start.plusDays(1), EventType.BORROW, book1, reader);
+        Path file = dir.resolve("events.seg");
+        columns.write(file);
+
+        ArchiveSegment segment = ArchiveSegment.open(file);
+
+        assertEquals(4, segment.rows());
+        // первые сутки: книга 1 выдана один раз, книга 2 один раз, у читателя три события
+        long from = millis(start);
+        long to = millis(start.plusDays(1));
+        long[] books = segment.countBorrowsByBook(from, to);
+        assertEquals(book1, segment.bookId(0));
+        assertEquals(1, books[0]);
+        assertEquals(1, books[1]);
+        assertEquals(3, segment.countEventsByReader(from, to)[0]);
+        assertEquals(4, segment.countEventsByReader(from, to + 1)[0]);
+        assertFalse(segment.overlaps(millis(start.plusDays(2)), millis(start.plusDays(3))));
+    }
+
+    private static long millis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
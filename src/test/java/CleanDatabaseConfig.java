@@ -0,0 +1,17 @@
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+@TestConfiguration
+public class CleanDatabaseConfig {
+
+    // как раньше с ddl-auto=create-drop: каждый тестовый контекст начинает с пустой схемы
+    @Bean
+    public FlywayMigrationStrategy cleanMigrationStrategy() {
+        return flyway -> {
+            Flyway.configure().configuration(flyway.getConfiguration()).cleanDisabled(false).load().clean();
+            flyway.migrate();
+        };
+    }
+}
@@ -0,0 +1,130 @@
+import libraryassistant.LibraryApplication;
+import libraryassistant.archive.EventArchive;
+import libraryassistant.dto.BookDTO;
+import libraryassistant.dto.ArchiveSegmentDTO;
+import libraryassistant.dto.BookEventDTO;
+import libraryassistant.dto.EventPartitionDTO;
+import libraryassistant.dto.ReaderDTO;
+import libraryassistant.entities.EventType;
+import libraryassistant.repository.projection.IdCount;
+import libraryassistant.service.BookEventService;
+import libraryassistant.service.BookService;
+import libraryassistant.service.DailyStatsService;
+import libraryassistant.service.EventPartitionService;
+import libraryassistant.service.ReaderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {LibraryApplication.class, CleanDatabaseConfig.class}, properties = {
+        "library.archive.enabled=true",
+        "library.archive.dir=${java.io.tmpdir}/library-archive-test"
+})
+public class EventArchiveTest {
+    private static final LocalDateTime MARCH = LocalDateTime.of(2020, 3, 1, 10, 0);
+    private static final LocalDate BORN_AFTER = LocalDate.of(2000, 1, 1);
+    private static final LocalDate BORN_BEFORE = LocalDate.of(2010, 1, 1);
+
+    @Autowired
+    private EventArchive eventArchive;
+
+    @Autowired
+    private DailyStatsService dailyStatsService;
+
+    @Autowired
+    private BookEventService bookEventService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReaderService readerService;
+
+    @Autowired
+    private EventPartitionService eventPartitionService;
+
+    @Test
+    public void testArchivingKeepsCountsAndLoanState() {
+        BookDTO book1 = bookService.createBook(new BookDTO(null, "archive-" + UUID.randomUUID(), "a1"));
+        BookDTO book2 = bookService.createBook(new BookDTO(null, "archive-" + UUID.randomUUID(), "a2"));
+        ReaderDTO young = readerService.createReader(new ReaderDTO(null, "archive-" + UUID.randomUUID(), "young", LocalDate.parse("2003-03-03")));
+        ReaderDTO old = readerService.createReader(new ReaderDTO(null, "archive-" + UUID.randomUUID(), "old", LocalDate.parse("1980-01-01")));
+        bookEventService.createEvents(List.of(
+                event(young, book1, MARCH, EventType.BORROW),
+                event(young, book1, MARCH.plusDays(2), EventType.RETURN),
+                event(old, book1, MARCH.plusDays(3).plusHours(5), EventType.BORROW),
+                event(old, book2, MARCH.plusDays(4), EventType.BORROW),
+                event(old, book2, MARCH.plusDays(4).plusHours(1), EventType.RETURN),
+                event(young, book2, MARCH.plusDays(5), EventType.BORROW)));
+        // края периода внутри дня: из сводок берутся только полные дни, края - из events или архива
+        LocalDateTime from = MARCH.plusHours(1);
+        LocalDateTime to = MARCH.plusDays(5).plusHours(1);
+        Map<UUID, Long> books = totals(dailyStatsService.countBooks(from, to, 10));
+        Map<UUID, Long> readers = totals(dailyStatsService.countReaders(from, to, 10));
+        Map<UUID, Long> youngBooks = totals(dailyStatsService.countBooks(MARCH, to, BORN_AFTER, BORN_BEFORE, 10));
+        Map<UUID, Long> youngReaders = totals(dailyStatsService.countReaders(MARCH, to, BORN_AFTER, BORN_BEFORE, 10));
+
+        assertFalse(eventArchive.archiveBefore(MARCH.toLocalDate().plusMonths(1)).isEmpty());
+
+        assertEquals(books, totals(dailyStatsService.countBooks(from, to, 10)));
+        assertEquals(readers, totals(dailyStatsService.countReaders(from, to, 10)));
+        assertEquals(youngBooks, totals(dailyStatsService.countBooks(MARCH, to, BORN_AFTER, BORN_BEFORE, 10)));
+        assertEquals(youngReaders, totals(dailyStatsService.countReaders(MARCH, to, BORN_AFTER, BORN_BEFORE, 10)));
+        assertEquals(Map.of(book1.getId(), 1L, book2.getId(), 1L), youngBooks);
+
+        // все события книг в архиве, состояние выдачи восстанавливается по нему
+        bookEventService.rebuildLoanState();
+        assertTrue(bookEventService.isBookBorrowed(book1.getId()));
+        assertTrue(bookEventService.isBookBorrowed(book2.getId()));
+    }
+
+    @Test
+    public void testArchivingWholeMonthDropsItsPartition() {
+        YearMonth june = YearMonth.of(2019, 6);
+        String partition = EventPartitionService.partitionName(june);
+        eventPartitionService.createPartitions(june, june);
+        BookDTO book = bookService.createBook(new BookDTO(null, "archive-" + UUID.randomUUID(), "a1"));
+        ReaderDTO reader = readerService.createReader(new ReaderDTO(null, "archive-" + UUID.randomUUID(), "june", LocalDate.parse("2003-03-03")));
+        LocalDateTime start = june.atDay(3).atTime(10, 0);
+        bookEventService.createEvents(List.of(
+                event(reader, book, start, EventType.BORROW),
+                event(reader, book, start.plusDays(1), EventType.RETURN),
+                event(reader, book, start.plusDays(2), EventType.BORROW)));
+        LocalDateTime end = june.atEndOfMonth().atTime(23, 0);
+        Map<UUID, Long> books = totals(dailyStatsService.countBooks(start.plusHours(1), end, 10));
+        Map<UUID, Long> readers = totals(dailyStatsService.countReaders(start.plusHours(1), end, 10));
+
+        List<ArchiveSegmentDTO> archived = eventArchive.archiveBefore(june.plusMonths(1).atDay(1));
+
+        assertEquals(1, archived.size());
+        assertEquals(3, archived.get(0).getRows());
+        assertTrue(eventPartitionService.findAllPartitions().stream().map(EventPartitionDTO::getName).noneMatch(partition::equals));
+        assertEquals(books, totals(dailyStatsService.countBooks(start.plusHours(1), end, 10)));
+        assertEquals(readers, totals(dailyStatsService.countReaders(start.plusHours(1), end, 10)));
+        bookEventService.rebuildLoanState();
+        assertTrue(bookEventService.isBookBorrowed(book.getId()));
+    }
+
+    private static BookEventDTO event(ReaderDTO reader, BookDTO book, LocalDateTime eventDate, EventType eventType) {
+        BookEventDTO event = new BookEventDTO();
+        event.setReader(reader);
+        event.setBook(book);
+        event.setEventDate(eventDate);
+        event.setEventType(eventType);
+        return event;
+    }
+
+    private static Map<UUID, Long> totals(List<IdCount> counts) {
+        return counts.stream().collect(Collectors.toMap(IdCount::getId, IdCount::getTotal));
+    }
+}
@@ -2,6 +2,8 @@ import jakarta.transaction.Transactional;
 import libraryassistant.LibraryApplication;
 import libraryassistant.dto.BookDTO;
 import libraryassistant.dto.BookEventDTO;
+import libraryassistant.dto.HistogramBucketDTO;
+import libraryassistant.dto.LeaderboardEntryDTO;
 import libraryassistant.dto.ReaderDTO;
 import libraryassistant.entities.EventType;
 import org.junit.jupiter.api.*;
@@ -16,10 +18,11 @@ import org.springframework.test.annotation.DirtiesContext;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest(classes = LibraryApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(classes = {LibraryApplication.class, CleanDatabaseConfig.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @Transactional
 public class LibraryApplicationTest {
 
@@ -127,6 +130,23 @@ public class LibraryApplicationTest {
             assertFalse(books.isEmpty());
         }
 
+        @Test
+        public void testGetAllBooksByPages() {
+            ResponseEntity<BookDTO[]> firstPage = restTemplate.getForEntity(getRootUrl() + "/books?limit=1", BookDTO[].class);
+
+            assertEquals(HttpStatus.OK, firstPage.getStatusCode());
+            assertNotNull(firstPage.getBody());
+            assertEquals(1, firstPage.getBody().length);
+            String cursor = firstPage.getHeaders().getFirst("X-Next-Cursor");
+            assertNotNull(cursor);
+
+            ResponseEntity<BookDTO[]> secondPage = restTemplate.getForEntity(getRootUrl() + "/books?limit=1&after=" + cursor, BookDTO[].class);
+            assertEquals(HttpStatus.OK, secondPage.getStatusCode());
+            assertNotNull(secondPage.getBody());
+            assertEquals(1, secondPage.getBody().length);
+            assertNotEquals(firstPage.getBody()[0].getId(), secondPage.getBody()[0].getId());
+        }
+
         @Test
         public void testDeleteBook() {
             restTemplate.delete(getRootUrl() + "/books/" + book1.getId());
@@ -257,6 +277,63 @@ public class LibraryApplicationTest {
             assertEquals(EventType.BORROW, response.getBody().getEventType());
         }
 
+        @Test
+        @DirtiesContext
+        public void testCreateBookEventDoesNotLoadReaderAndBook() {
+            BookEventDTO newEvent = new BookEventDTO();
+            newEvent.setEventDate(LocalDateTime.now());
+            newEvent.setEventType(EventType.BORROW);
+            newEvent.setBook(book2);
+            newEvent.setReader(reader2);
+
+            //вставка события, состояние книги и две сводки; читатель и книга для ответа уже в кэше после setUp
+            ResponseEntity<BookEventDTO> response = QueryBudget.assertAtMostStatements(4,
+                    restTemplate.postForEntity(getRootUrl() + "/events", newEvent, BookEventDTO.class));
+
+            assertEquals(HttpStatus.CREATED, response.getStatusCode());
+            assertNotNull(response.getBody());
+            assertEquals("qqq_2", response.getBody().getReader().getFirstName());
+            assertEquals(LocalDate.parse("2005-08-08"), response.getBody().getReader().getBirthDate());
+            assertEquals("cbd2", response.getBody().getBook().getTitle());
+        }
+
+        @Test
+        public void testCreateBookEventWithUnknownBook() {
+            BookEventDTO newEvent = new BookEventDTO();
+            newEvent.setEventDate(LocalDateTime.now());
+            newEvent.setEventType(EventType.BORROW);
+            newEvent.setBook(new BookDTO(UUID.randomUUID(), "none", "none"));
+            newEvent.setReader(reader2);
+
+            ResponseEntity<String> response = restTemplate.postForEntity(getRootUrl() + "/events", newEvent, String.class);
+
+            assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        }
+
+        @Test
+        public void testCreateBookEventWithoutType() {
+            BookEventDTO newEvent = new BookEventDTO();
+            newEvent.setEventDate(LocalDateTime.now());
+            newEvent.setBook(book2);
+            newEvent.setReader(reader2);
+
+            ResponseEntity<String> response = restTemplate.postForEntity(getRootUrl() + "/events", newEvent, String.class);
+
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+
+        @Test
+        public void testCreateBookEventWithoutDate() {
+            BookEventDTO newEvent = new BookEventDTO();
+            newEvent.setEventType(EventType.BORROW);
+            newEvent.setBook(book2);
+            newEvent.setReader(reader2);
+
+            ResponseEntity<String> response = restTemplate.postForEntity(getRootUrl() + "/events", newEvent, String.class);
+
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+
         @Test
         @DirtiesContext
         public void testGetMostPopularBook() {
@@ -288,6 +365,56 @@ public class LibraryApplicationTest {
             assertEquals(reader1.getFirstName(), response.getBody().getFirstName());
         }
 
+        @Test
+        @DirtiesContext
+        public void testGetBookLeaderboard() {
+            ResponseEntity<LeaderboardEntryDTO[]> response = restTemplate.getForEntity(
+                    getRootUrl() + "/events/leaderboard/books?window=LAST_24H", LeaderboardEntryDTO[].class);
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertNotNull(response.getBody());
+            assertEquals(1, response.getBody().length);
+            assertEquals(1, response.getBody()[0].getCount());
+        }
+
+        @Test
+        @DirtiesContext
+        public void testGetHistogram() {
+            String url = getRootUrl() + "/events/histogram?startDate=2024-12-01T00:00:00&endDate=2024-12-01T23:59:59&granularity=DAY";
+            ResponseEntity<HistogramBucketDTO[]> response = restTemplate.getForEntity(url, HistogramBucketDTO[].class);
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertNotNull(response.getBody());
+            assertEquals(1, response.getBody().length);
+            assertEquals(LocalDateTime.of(2024, 12, 1, 0, 0), response.getBody()[0].getBucketStart());
+            assertEquals(1, response.getBody()[0].getBorrows());
+            assertEquals(1, response.getBody()[0].getReturns());
+
+            //событие задним числом в закрытую корзину должно сбросить ее из кэша
+            BookEventDTO event = new BookEventDTO();
+            event.setEventDate(LocalDateTime.of(2024, 12, 1, 12, 0));
+            event.setEventType(EventType.BORROW);
+            event.setBook(book2);
+            event.setReader(reader2);
+            restTemplate.postForEntity(getRootUrl() + "/events", event, BookEventDTO.class);
+
+            response = restTemplate.getForEntity(url, HistogramBucketDTO[].class);
+            assertEquals(2, response.getBody()[0].getBorrows());
+
+            //размер корзины принимается в любом регистре
+            response = restTemplate.getForEntity(url.replace("granularity=DAY", "granularity=hour"), HistogramBucketDTO[].class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals(24, response.getBody().length);
+        }
+
+        @Test
+        public void testGetHistogramWithUnknownGranularity() {
+            String url = getRootUrl() + "/events/histogram?startDate=2024-12-01T00:00:00&endDate=2024-12-01T23:59:59&granularity=minute";
+            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        }
+
         @Test
         @DirtiesContext
         public void testGetAllEvents() {
@@ -297,7 +424,38 @@ public class LibraryApplicationTest {
             assertNotNull(response.getBody());
             List<BookEventDTO> events = List.of(response.getBody());
             assertFalse(events.isEmpty());
+            assertNotNull(events.get(0).getReader().getFirstName());
+            assertNotNull(events.get(0).getBook().getTitle());
+        }
+
+        @Test
+        public void testGetAllEventsByPages() {
+            ResponseEntity<BookEventDTO[]> firstPage = restTemplate.getForEntity(getRootUrl() + "/events?limit=2", BookEventDTO[].class);
+
+            assertEquals(HttpStatus.OK, firstPage.getStatusCode());
+            assertEquals(2, firstPage.getBody().length);
+            String cursor = firstPage.getHeaders().getFirst("X-Next-Cursor");
+            assertNotNull(cursor);
+
+            ResponseEntity<BookEventDTO[]> secondPage = restTemplate.getForEntity(getRootUrl() + "/events?limit=2&after=" + cursor, BookEventDTO[].class);
+            assertEquals(HttpStatus.OK, secondPage.getStatusCode());
+            assertTrue(secondPage.getBody().length >= 1);
+            //страницы идут подряд в порядке дат и не пересекаются
+            BookEventDTO next = secondPage.getBody()[0];
+            assertFalse(next.getEventDate().isBefore(firstPage.getBody()[1].getEventDate()));
+            assertNotEquals(firstPage.getBody()[0].getId(), next.getId());
+            assertNotEquals(firstPage.getBody()[1].getId(), next.getId());
+        }
+
+        @Test
+        @DirtiesContext
+        public void testGetAllEventsIssuesSingleStatement() {
+            //читатели и книги всех событий приходят одним запросом, без догрузки по строкам
+            ResponseEntity<BookEventDTO[]> response = QueryBudget.assertAtMostStatements(1,
+                    restTemplate.getForEntity(getRootUrl() + "/events", BookEventDTO[].class));
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertTrue(response.getBody().length >= 3);
         }
     }
 }
-
@@ -0,0 +1,29 @@
+import libraryassistant.LibraryApplication;
+import libraryassistant.engine.LoanStateEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тот же прогон, что LoanStressTest, с включенным движком состояния выдачи в памяти.
+ * Кроме инвариантов журнала проверяет, что после прогона движок согласен с book_loan_state по каждой книге.
+ */
+@SpringBootTest(classes = {LibraryApplication.class, CleanDatabaseConfig.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "library.loan-engine.enabled=true")
+public class LoanEngineStressTest extends LoanStressTest {
+
+    @Autowired
+    private LoanStateEngine loanStateEngine;
+
+    @Override
+    protected void checkLoanState() {
+        jdbcTemplate.query("select book_id, last_event_type from book_loan_state",
+                (RowCallbackHandler) rs -> assertEquals("BORROW".equals(rs.getString(2)),
+                        loanStateEngine.isBookBorrowed(rs.getObject(1, UUID.class)),
+                        "Движок и book_loan_state расходятся по книге " + rs.getObject(1, UUID.class)));
+    }
+}
@@ -0,0 +1,159 @@
+import libraryassistant.LibraryApplication;
+import libraryassistant.dto.BookDTO;
+import libraryassistant.dto.ReaderDTO;
+import libraryassistant.entities.EventType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Параллельные выдачи и возвраты нескольких популярных книг из многих потоков через /events/create.
+ * Проверяет, что в журнале событий по каждой книге выдачи и возвраты чередуются, начиная с выдачи
+ * (книга не выдается дважды и не возвращается без выдачи), и что состояние книг совпадает с журналом.
+ * Пишет в лог пропускную способность и задержки, чтобы изменения блокировок оценивать и по скорости.
+ * Запуск: ./gradlew benchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = {LibraryApplication.class, CleanDatabaseConfig.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+public class LoanStressTest {
+    private static final int BOOKS = 4;
+    private static final int READERS = 32;
+    private static final int THREADS = 16;
+    private static final int WARMUP_OPS = 50;
+    private static final int OPS_PER_THREAD = 250;
+    private static final Logger log = LoggerFactory.getLogger(LoanStressTest.class);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    private final List<String> titles = new ArrayList<>();
+    private final List<String> readerParams = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < BOOKS; i++) {
+            BookDTO book = new BookDTO(null, "hot" + i, "author" + i);
+            assertEquals(HttpStatus.CREATED, restTemplate.postForEntity(getRootUrl() + "/books", book, BookDTO.class).getStatusCode());
+            titles.add(book.getTitle());
+        }
+        for (int i = 0; i < READERS; i++) {
+            ReaderDTO reader = new ReaderDTO(null, "stress" + i, "reader" + i, LocalDate.of(1990, 1, 1));
+            assertEquals(HttpStatus.CREATED, restTemplate.postForEntity(getRootUrl() + "/readers", reader, ReaderDTO.class).getStatusCode());
+            readerParams.add("firstName=" + reader.getFirstName() + "&secondName=" + reader.getSecondName());
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrowAndReturnKeepInvariants() throws Exception {
+        // прогрев JIT, пулов и кэшей тем же сценарием
+        run(THREADS, WARMUP_OPS, new long[THREADS * WARMUP_OPS], new AtomicInteger(), new AtomicInteger());
+
+        long[] latencies = new long[THREADS * OPS_PER_THREAD];
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        long started = System.nanoTime();
+        run(THREADS, OPS_PER_THREAD, latencies, accepted, rejected);
+        long elapsed = System.nanoTime() - started;
+
+        Arrays.sort(latencies);
+        log.info(String.format("%s: %d ops in %d ms, %.0f ops/s, accepted %d, rejected %d, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                getClass().getSimpleName(), latencies.length, elapsed / 1_000_000, latencies.length * 1e9 / elapsed, accepted.get(), rejected.get(),
+                latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6, latencies[latencies.length - 1] / 1e6));
+
+        assertEquals(latencies.length, accepted.get() + rejected.get());
+        assertTrue(accepted.get() > 0);
+
+        // журнал по каждой книге в порядке записи: выдача, возврат, выдача, ...
+        Map<String, EventType> lastByTitle = new HashMap<>();
+        jdbcTemplate.query("""
+                        select b.title, e.event_type
+                        from events e join books b on b.id = e.book_id
+                        order by b.title, e.event_date, e.id""",
+                (RowCallbackHandler) rs -> {
+                    String title = rs.getString(1);
+                    EventType type = EventType.valueOf(rs.getString(2));
+                    EventType expected = lastByTitle.get(title) == EventType.BORROW ? EventType.RETURN : EventType.BORROW;
+                    assertEquals(expected, type, "Нарушен порядок выдач и возвратов книги " + title);
+                    lastByTitle.put(title, type);
+                });
+
+        // состояние книги совпадает с последним событием журнала
+        jdbcTemplate.query("select b.title, s.last_event_type from book_loan_state s join books b on b.id = s.book_id",
+                (RowCallbackHandler) rs -> assertEquals(lastByTitle.get(rs.getString(1)), EventType.valueOf(rs.getString(2))));
+        checkLoanState();
+    }
+
+    // проверки, которые добавляют прогоны с другими настройками выдачи
+    protected void checkLoanState() {
+    }
+
+    // каждый поток выполняет ops запросов со случайной книгой, читателем и типом события; 201 и 409 - ожидаемые ответы
+    private void run(int threads, int ops, long[] latencies, AtomicInteger accepted, AtomicInteger rejected) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(thread);
+                start.await();
+                for (int i = 0; i < ops; i++) {
+                    String url = getRootUrl() + "/events/create?" + readerParams.get(random.nextInt(READERS))
+                            + "&bookTitle=" + titles.get(random.nextInt(BOOKS))
+                            + "&eventType=" + (random.nextBoolean() ? EventType.BORROW : EventType.RETURN);
+                    long sent = System.nanoTime();
+                    HttpStatus status = HttpStatus.valueOf(restTemplate.postForEntity(url, null, String.class).getStatusCode().value());
+                    latencies[thread * ops + i] = System.nanoTime() - sent;
+                    if (status == HttpStatus.CREATED) {
+                        accepted.incrementAndGet();
+                    } else {
+                        assertEquals(HttpStatus.CONFLICT, status);
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+    }
+
+    private String getRootUrl() {
+        return "http://localhost:" + port;
+    }
+}
@@ -0,0 +1,46 @@
+import libraryassistant.LibraryApplication;
+import libraryassistant.dto.BookDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {LibraryApplication.class, CleanDatabaseConfig.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class MetricsEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void testPrometheusEndpointExposesApplicationMetrics() {
+        String rootUrl = "http://localhost:" + port;
+        restTemplate.postForEntity(rootUrl + "/books", new BookDTO(null, "metrics-" + UUID.randomUUID(), "a1"), BookDTO.class);
+        restTemplate.getForEntity(rootUrl + "/books", BookDTO[].class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity(rootUrl + "/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String metrics = response.getBody();
+        assertNotNull(metrics);
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(metrics.contains("uri=\"/books\""));
+        assertTrue(metrics.contains("library_service_seconds_bucket{"));
+        assertTrue(metrics.contains("class=\"libraryassistant.service.BookService\""));
+        assertTrue(metrics.contains("spring_data_repository_invocations_seconds_bucket{"));
+        assertTrue(metrics.contains("hibernate_statements_total"));
+        assertTrue(metrics.contains("hikaricp_connections_active"));
+        assertTrue(metrics.contains("hikaricp_connections_pending"));
+        assertTrue(metrics.contains("hikaricp_connections_acquire_seconds_bucket{"));
+        assertTrue(metrics.contains("jvm_memory_used_bytes"));
+    }
+}
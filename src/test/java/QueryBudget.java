@@ -0,0 +1,41 @@
+import libraryassistant.jdbc.QueryCounter;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверки числа SQL-запросов, чтобы появление N+1 роняло тесты.
+ * Для HTTP-запроса число берется из заголовка Server-Timing ответа, для вызова внутри теста - из счетчика потока.
+ */
+public final class QueryBudget {
+    private static final Pattern STATEMENTS = Pattern.compile("db;desc=\"(\\d+) statements\"");
+
+    private QueryBudget() {
+    }
+
+    public static <T> ResponseEntity<T> assertAtMostStatements(int max, ResponseEntity<T> response) {
+        List<String> serverTiming = response.getHeaders().getOrEmpty("Server-Timing");
+        assertFalse(serverTiming.isEmpty(), "Ответ без заголовка Server-Timing");
+        Matcher matcher = STATEMENTS.matcher(String.join(",", serverTiming));
+        assertTrue(matcher.find(), "В Server-Timing нет числа SQL-запросов: " + serverTiming);
+        int statements = Integer.parseInt(matcher.group(1));
+        assertTrue(statements <= max, "Выполнено " + statements + " SQL-запросов, ожидалось не больше " + max);
+        return response;
+    }
+
+    public static <T> T assertAtMostStatements(int max, Supplier<T> action) {
+        QueryCounter counter = QueryCounter.start();
+        try {
+            T result = action.get();
+            assertTrue(counter.statements() <= max, "Выполнено " + counter.statements() + " SQL-запросов, ожидалось не больше " + max);
+            return result;
+        } finally {
+            QueryCounter.stop();
+        }
+    }
+}
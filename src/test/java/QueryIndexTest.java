@@ -0,0 +1,113 @@
+import libraryassistant.LibraryApplication;
+import libraryassistant.service.EventPartitionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.YearMonth;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет, что на заполненных таблицах планировщик выбирает индексы из миграции V2 и отсекает лишние секции events.
+ * Данные и секции создаются в транзакции теста и откатываются после него.
+ * Индексы секций называются по колонкам, например events_2024_03_book_id_event_date_idx.
+ */
+@SpringBootTest(classes = {LibraryApplication.class, CleanDatabaseConfig.class})
+@Transactional
+public class QueryIndexTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EventPartitionService eventPartitionService;
+
+    private UUID bookId;
+    private UUID readerId;
+
+    @BeforeEach
+    public void seed() {
+        eventPartitionService.createPartitions(YearMonth.of(2024, 1), YearMonth.of(2024, 12));
+        jdbcTemplate.update("""
+                insert into books (id, title, author)
+                select gen_random_uuid(), 'plan-book-' || g, 'plan-author-' || (g % 100) from generate_series(1, 2000) g
+                """);
+        jdbcTemplate.update("""
+                insert into readers (id, first_name, second_name, birth_date)
+                select gen_random_uuid(), 'plan-first-' || g, 'plan-second-' || g, date '1990-01-01' + g
+                from generate_series(1, 2000) g
+                """);
+        // 100000 событий за 2024 год, равномерно по книгам, читателям и времени
+        jdbcTemplate.update("""
+                with b as (select id, row_number() over () as n from books),
+                     r as (select id, row_number() over () as n from readers)
+                insert into events (id, reader_id, book_id, event_date, event_type)
+                select gen_random_uuid(), r.id, b.id,
+                       timestamp '2024-01-01' + (g * interval '5 minutes'),
+                       case when g % 2 = 0 then 'BORROW' else 'RETURN' end
+                from generate_series(1, 100000) g
+                join b on b.n = g % 2000 + 1
+                join r on r.n = (g * 7) % 2000 + 1
+                """);
+        jdbcTemplate.execute("analyze books");
+        jdbcTemplate.execute("analyze readers");
+        jdbcTemplate.execute("analyze events");
+        bookId = jdbcTemplate.queryForObject("select id from books where title = 'plan-book-42'", UUID.class);
+        readerId = jdbcTemplate.queryForObject("select id from readers where first_name = 'plan-first-42'", UUID.class);
+    }
+
+    @Test
+    public void testLatestEventByBookUsesBookDateIndex() {
+        assertPlanUses("_book_id_event_date_idx",
+                "select * from events where book_id = '" + bookId + "' order by event_date desc limit 1");
+    }
+
+    @Test
+    public void testEventsByPeriodAndTypeUseDateTypeIndex() {
+        assertPlanUses("events_2024_03_event_date_event_type_idx", """
+                select * from events
+                where event_date between '2024-03-01 00:00' and '2024-03-01 06:00' and event_type = 'BORROW'
+                """);
+    }
+
+    @Test
+    public void testReaderHistoryUsesReaderDateIndex() {
+        assertPlanUses("_reader_id_event_date_idx", "select * from events where reader_id = '" + readerId + "'"
+                + " and event_date between '2024-01-01' and '2024-12-31'");
+    }
+
+    @Test
+    public void testPeriodQueryScansOnlyItsMonth() {
+        String plan = plan("select count(*) from events where event_date between '2024-03-01' and '2024-03-31 23:59:59'");
+
+        assertTrue(plan.contains("events_2024_03"), plan);
+        assertFalse(plan.contains("events_2024_02"), plan);
+        assertFalse(plan.contains("events_2024_04"), plan);
+        assertFalse(plan.contains("events_default"), plan);
+    }
+
+    @Test
+    public void testFindByTitleUsesUniqueIndex() {
+        assertPlanUses("ux_books_title", "select * from books where title = 'plan-book-42'");
+    }
+
+    @Test
+    public void testFindByFullNameUsesUniqueIndex() {
+        assertPlanUses("ux_readers_name",
+                "select * from readers where first_name = 'plan-first-42' and second_name = 'plan-second-42'");
+    }
+
+    private void assertPlanUses(String index, String sql) {
+        String plan = plan(sql);
+        assertTrue(plan.contains(index), "ожидался индекс " + index + " в плане:\n" + plan);
+    }
+
+    private String plan(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+    }
+}
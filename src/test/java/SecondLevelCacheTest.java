@@ -0,0 +1,100 @@
+import jakarta.persistence.EntityManagerFactory;
+import libraryassistant.LibraryApplication;
+import libraryassistant.dto.BookDTO;
+import libraryassistant.dto.BookEventDTO;
+import libraryassistant.dto.ReaderDTO;
+import libraryassistant.entities.EventType;
+import libraryassistant.service.BookService;
+import libraryassistant.service.ReaderService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {LibraryApplication.class, CleanDatabaseConfig.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class SecondLevelCacheTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReaderService readerService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void testRepeatedFindBookByIdDoesNotReachDatabase() {
+        BookDTO book = new BookDTO(null, "l2-" + UUID.randomUUID(), "a1");
+        UUID id = bookService.createBook(book).getId();
+        // первое чтение гарантированно кладет книгу в кэш
+        bookService.findBookById(id);
+        statistics.clear();
+
+        bookService.findBookById(id);
+        bookService.findBookById(id);
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    public void testRepeatedFindReaderByIdDoesNotReachDatabase() {
+        ReaderDTO reader = new ReaderDTO(null, "l2-" + UUID.randomUUID(), "l2", LocalDate.parse("2001-01-01"));
+        UUID id = readerService.createReader(reader).getId();
+        readerService.findReaderById(id);
+        statistics.clear();
+
+        readerService.findReaderById(id);
+        readerService.findReaderById(id);
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    public void testCreatingEventKeepsBookAndReaderInCache() {
+        BookDTO book = bookService.createBook(new BookDTO(null, "l2-" + UUID.randomUUID(), "a1"));
+        ReaderDTO reader = readerService.createReader(new ReaderDTO(null, "l2-" + UUID.randomUUID(), "l2", LocalDate.parse("2001-01-01")));
+        bookService.findBookById(book.getId());
+        readerService.findReaderById(reader.getId());
+        BookEventDTO event = new BookEventDTO();
+        event.setReader(reader);
+        event.setBook(book);
+        event.setEventDate(LocalDateTime.parse("2024-12-01T10:00:00"));
+        event.setEventType(EventType.BORROW);
+        // нативные запросы сводок и состояния выдачи не должны сбрасывать регионы книг и читателей
+        assertEquals(HttpStatus.CREATED, restTemplate.postForEntity("http://localhost:" + port + "/events", event, BookEventDTO.class).getStatusCode());
+        statistics.clear();
+
+        bookService.findBookById(book.getId());
+        readerService.findReaderById(reader.getId());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getSecondLevelCacheHitCount());
+    }
+}
@@ -0,0 +1,47 @@
+import libraryassistant.engine.SlidingWindowCounter;
+import libraryassistant.repository.projection.IdCount;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlidingWindowCounterTest {
+    private static final long HOUR = 3_600_000L;
+
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+
+    @Test
+    public void testRankingWithinWindow() {
+        // окно 24 часа корзинами по часу
+        SlidingWindowCounter counter = new SlidingWindowCounter(24 * HOUR, HOUR);
+        long now = 1000 * HOUR;
+        counter.add(first, now - 2 * HOUR, now);
+        counter.add(second, now - HOUR, now);
+        counter.add(second, now, now);
+
+        List<IdCount> top = counter.top(10, now);
+
+        assertEquals(2, top.size());
+        assertEquals(second, top.get(0).getId());
+        assertEquals(2, top.get(0).getTotal());
+        assertEquals(first, top.get(1).getId());
+        assertEquals(1, counter.top(1, now).size());
+    }
+
+    @Test
+    public void testOldBucketsExpire() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(24 * HOUR, HOUR);
+        long now = 1000 * HOUR;
+        counter.add(first, now - 23 * HOUR, now);
+        counter.add(second, now, now);
+        // событие старше окна не учитывается
+        counter.add(second, now - 30 * HOUR, now);
+
+        assertEquals(2, counter.top(10, now).size());
+        assertEquals(List.of(second), counter.top(10, now + HOUR).stream().map(IdCount::getId).toList());
+        assertTrue(counter.top(10, now + 48 * HOUR).isEmpty());
+    }
+}
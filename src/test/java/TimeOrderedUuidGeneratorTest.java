@@ -0,0 +1,37 @@
+import libraryassistant.id.TimeOrderedUuidGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    public void testVersionAndVariant() {
+        UUID id = TimeOrderedUuidGenerator.next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+    }
+
+    @Test
+    public void testIdsAreStrictlyIncreasing() {
+        UUID previous = TimeOrderedUuidGenerator.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = TimeOrderedUuidGenerator.next();
+            // порядок как у uuid в postgres: беззнаковое сравнение старших бит
+            assertTrue(Long.compareUnsigned(next.getMostSignificantBits(), previous.getMostSignificantBits()) > 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void testTimestampIsCurrentTime() {
+        long before = System.currentTimeMillis();
+        long timestamp = TimeOrderedUuidGenerator.next().getMostSignificantBits() >>> 16;
+
+        // при переполнении счетчика время уходит вперед, но не дальше чем на доли секунды
+        assertTrue(timestamp >= before && timestamp <= System.currentTimeMillis() + 1000);
+    }
+}
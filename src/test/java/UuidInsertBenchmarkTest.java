@@ -0,0 +1,77 @@
+import libraryassistant.LibraryApplication;
+import libraryassistant.id.TimeOrderedUuidGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сравнение вставки с ключами UUIDv4 и UUIDv7 в таблицу с первичным ключом.
+ * Запуск: ./gradlew benchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = {LibraryApplication.class, CleanDatabaseConfig.class})
+@Transactional
+public class UuidInsertBenchmarkTest {
+    private static final int ROWS = 500_000;
+    private static final int BATCH_SIZE = 1000;
+    private static final Logger log = LoggerFactory.getLogger(UuidInsertBenchmarkTest.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testTimeOrderedKeysKeepIndexCompact() {
+        // прогрев JIT и соединения
+        insert("warmup", UUID::randomUUID, ROWS / 10);
+
+        Result random = insert("random_v4", UUID::randomUUID, ROWS);
+        Result ordered = insert("ordered_v7", TimeOrderedUuidGenerator::next, ROWS);
+
+        log.info("{}", random);
+        log.info("{}", ordered);
+        // последовательные ключи заполняют страницы индекса почти полностью, случайные - примерно на 70%
+        assertTrue(ordered.indexBytes() < random.indexBytes());
+    }
+
+    private Result insert(String name, Supplier<UUID> ids, int rows) {
+        String table = "bench_" + name;
+        jdbcTemplate.execute("create temp table " + table + " (id uuid primary key, event_date timestamp) on commit drop");
+        long started = System.nanoTime();
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{ids.get(), Timestamp.valueOf(LocalDateTime.now())});
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into " + table + " (id, event_date) values (?, ?)", batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into " + table + " (id, event_date) values (?, ?)", batch);
+        }
+        long elapsed = System.nanoTime() - started;
+        Long indexBytes = jdbcTemplate.queryForObject("select pg_relation_size('" + table + "_pkey')", Long.class);
+        return new Result(name, rows, elapsed, indexBytes);
+    }
+
+    private record Result(String name, int rows, long elapsedNanos, long indexBytes) {
+        @Override
+        public String toString() {
+            return String.format("%-10s %,d строк за %,d мс: %,.0f строк/с, индекс %,d КБ",
+                    name, rows, elapsedNanos / 1_000_000, rows * 1e9 / elapsedNanos, indexBytes / 1024);
+        }
+    }
+}